@@ -0,0 +1,56 @@
+package com.jakubfilipiak.MailSender;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Random;
+
+class BenchmarkMessages {
+
+    static final String RECIPIENT = "jan.kowalski@example.com";
+
+    private BenchmarkMessages() {
+    }
+
+    static MessageParams plain() {
+        return MessageParams.builder()
+                .recipient(RECIPIENT)
+                .subject("Your order has been shipped")
+                .textContent("Hello Jan,\n\nyour order #12345 has been shipped and should arrive within 2 days.\n")
+                .isHtml(false)
+                .build();
+    }
+
+    static MessageParams html() {
+        StringBuilder content = new StringBuilder("<html><body><h1>Hello Jan!</h1>");
+        for (int i = 0; i < 50; i++)
+            content.append("<p style=\"color:#000080\">Newsletter paragraph ").append(i)
+                    .append(", see <a href=\"https://example.com/offer\">our offer</a>.</p>\n");
+        return MessageParams.builder()
+                .recipient(RECIPIENT)
+                .subject("Newsletter")
+                .textContent(content.append("</body></html>").toString())
+                .isHtml(true)
+                .build();
+    }
+
+    static MessageParams withAttachment(Path attachment) {
+        return MessageParams.builder()
+                .recipient(RECIPIENT)
+                .subject("Invoice")
+                .textContent("Hello Jan,\n\nplease find the invoice attached.\n")
+                .isHtml(false)
+                .attachments(Collections.singletonMap(attachment.toString(), "invoice.pdf"))
+                .build();
+    }
+
+    static Path createAttachment(int size) throws IOException {
+        Path attachment = Files.createTempFile("benchmark", ".pdf");
+        byte[] content = new byte[size];
+        new Random(42).nextBytes(content);
+        Files.write(attachment, content);
+        attachment.toFile().deleteOnExit();
+        return attachment;
+    }
+}
@@ -0,0 +1,55 @@
+package com.jakubfilipiak.MailSender;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComposeMessageBenchmark {
+
+    private EmailSenderImpl emailSender;
+    private MessageParams plainMessage;
+    private MessageParams htmlMessage;
+    private MessageParams attachmentMessage;
+
+    @Setup
+    public void setUp() throws IOException {
+        emailSender = new EmailSenderImpl(new JavaMailSenderImpl(), new EmailAddressValidator());
+        plainMessage = BenchmarkMessages.plain();
+        htmlMessage = BenchmarkMessages.html();
+        attachmentMessage = BenchmarkMessages.withAttachment(BenchmarkMessages.createAttachment(256 * 1024));
+    }
+
+    @Benchmark
+    public MimeMessage composePlain() throws MessagingException, IOException {
+        return emailSender.composeMessage(plainMessage);
+    }
+
+    @Benchmark
+    public MimeMessage composeHtml() throws MessagingException, IOException {
+        return emailSender.composeMessage(htmlMessage);
+    }
+
+    @Benchmark
+    public MimeMessage composeWithAttachment() throws MessagingException, IOException {
+        return emailSender.composeMessage(attachmentMessage);
+    }
+}
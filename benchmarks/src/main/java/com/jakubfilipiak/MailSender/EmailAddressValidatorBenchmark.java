@@ -0,0 +1,39 @@
+package com.jakubfilipiak.MailSender;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmailAddressValidatorBenchmark {
+
+    @Param({"jan.kowalski@example.com", "wrongRecipient@gmail", "very.long.local.part.for.testing@mail.subdomain.example.co.uk"})
+    private String address;
+
+    private EmailAddressValidator addressValidator;
+
+    @Setup
+    public void setUp() {
+        addressValidator = new EmailAddressValidator();
+    }
+
+    @Benchmark
+    public boolean isCorrect() {
+        return addressValidator.isCorrect(address);
+    }
+}
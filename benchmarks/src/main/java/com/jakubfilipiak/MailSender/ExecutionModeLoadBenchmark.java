@@ -0,0 +1,104 @@
+package com.jakubfilipiak.MailSender;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// many concurrent slow SMTP conversations behind a deliberately small Tomcat pool, so the servlet mode
+// is capped by request threads and the async mode is not; with the shipped SMTP pool size both modes
+// are capped by connections instead
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+// few enough clients that a send queued behind the shipped pool still finishes within an iteration
+@Threads(40)
+@Fork(1)
+public class ExecutionModeLoadBenchmark {
+
+    private static final byte[] MESSAGE = ("{\"recipient\":\"" + BenchmarkMessages.RECIPIENT + "\","
+            + "\"subject\":\"Load test\",\"textContent\":\"Hello\",\"isHtml\":false}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Param({"servlet", "async"})
+    private String mode;
+
+    @Param({"200"})
+    private long smtpLatencyMillis;
+
+    @Param({"4", "400"})
+    private int smtpPoolSize;
+
+    private SmtpStub smtpStub;
+    private ConfigurableApplicationContext context;
+    private URL messagesUrl;
+
+    @Setup
+    public void setUp() throws IOException {
+        smtpStub = new SmtpStub();
+        smtpStub.setDataDelayMillis(smtpLatencyMillis);
+        context = SpringApplication.run(MailSenderApplication.class,
+                "--server.port=0",
+                "--server.tomcat.max-threads=20",
+                "--email.execution.mode=" + mode,
+                "--email.execution.fallback-threads=400",
+                "--email.pool.max-size=" + smtpPoolSize,
+                "--email.outbox.enabled=false",
+                "--spring.mail.host=localhost",
+                "--spring.mail.port=" + smtpStub.getPort(),
+                "--spring.mail.properties.mail.smtp.auth=false",
+                "--spring.mail.properties.mail.smtp.starttls.enable=false",
+                "--logging.level.root=WARN");
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        messagesUrl = new URL("http://localhost:" + port + "/messages");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        smtpStub.close();
+    }
+
+    @Benchmark
+    public int sendMessage() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) messagesUrl.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(MESSAGE);
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (in != null) {
+            byte[] buffer = new byte[1024];
+            while (in.read(buffer) != -1);
+            in.close();
+        }
+        if (status != 200)
+            throw new IllegalStateException("Unexpected status " + status);
+        return status;
+    }
+}
@@ -0,0 +1,64 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// per recipient cost of a newsletter: composing and serializing every copy vs writing headers over a shared body
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FanOutBenchmark {
+
+    @Param({"html", "attachment"})
+    private String kind;
+
+    private EmailSenderImpl emailSender;
+    private MessageParams params;
+    private SharedMimeBody body;
+
+    @Setup
+    public void setUp() throws IOException, MessagingException {
+        emailSender = new EmailSenderImpl(new JavaMailSenderImpl(), new EmailAddressValidator());
+        params = kind.equals("html")
+                ? BenchmarkMessages.html()
+                : BenchmarkMessages.withAttachment(BenchmarkMessages.createAttachment(256 * 1024));
+        body = SharedMimeBody.render(emailSender.composeMessage(params));
+    }
+
+    @Benchmark
+    public long composeEachRecipient() throws IOException, MessagingException {
+        return writeTo(emailSender.composeMessage(params));
+    }
+
+    @Benchmark
+    public long sharedBody() throws IOException, MessagingException {
+        return writeTo(new FanOutMimeMessage(body, BenchmarkMessages.RECIPIENT));
+    }
+
+    private long writeTo(MimeMessage message) throws IOException, MessagingException {
+        message.saveChanges();
+        CountingOutputStream out = new CountingOutputStream(ByteStreams.nullOutputStream());
+        message.writeTo(out);
+        return out.getCount();
+    }
+}
@@ -0,0 +1,59 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MimeSerializationBenchmark {
+
+    @Param({"plain", "html", "attachment"})
+    private String kind;
+
+    private MimeMessage message;
+
+    @Setup
+    public void setUp() throws IOException, MessagingException {
+        EmailSenderImpl emailSender = new EmailSenderImpl(new JavaMailSenderImpl(), new EmailAddressValidator());
+        switch (kind) {
+            case "plain":
+                message = emailSender.composeMessage(BenchmarkMessages.plain());
+                break;
+            case "html":
+                message = emailSender.composeMessage(BenchmarkMessages.html());
+                break;
+            default:
+                message = emailSender.composeMessage(
+                        BenchmarkMessages.withAttachment(BenchmarkMessages.createAttachment(256 * 1024)));
+        }
+        message.saveChanges();
+    }
+
+    @Benchmark
+    public long writeTo() throws IOException, MessagingException {
+        CountingOutputStream out = new CountingOutputStream(ByteStreams.nullOutputStream());
+        message.writeTo(out);
+        return out.getCount();
+    }
+}
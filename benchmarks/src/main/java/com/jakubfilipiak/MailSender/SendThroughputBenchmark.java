@@ -0,0 +1,65 @@
+package com.jakubfilipiak.MailSender;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.mail.MessagingException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class SendThroughputBenchmark {
+
+    @Param({"4"})
+    private int poolSize;
+
+    private SmtpStub smtpStub;
+    private PooledJavaMailSender mailSender;
+    private EmailSenderImpl emailSender;
+    private MessageParams plainMessage;
+    private MessageParams attachmentMessage;
+
+    @Setup
+    public void setUp() throws IOException {
+        smtpStub = new SmtpStub();
+        mailSender = new PooledJavaMailSender(poolSize, 10_000, 30_000, 10_000);
+        mailSender.setHost("localhost");
+        mailSender.setPort(smtpStub.getPort());
+        emailSender = new EmailSenderImpl(mailSender, new EmailAddressValidator());
+        plainMessage = BenchmarkMessages.plain();
+        attachmentMessage = BenchmarkMessages.withAttachment(BenchmarkMessages.createAttachment(64 * 1024));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        mailSender.destroy();
+        smtpStub.close();
+    }
+
+    @Benchmark
+    public void sendPlain() throws MessagingException, IOException {
+        emailSender.sendMessage(plainMessage);
+    }
+
+    @Benchmark
+    public void sendWithAttachment() throws MessagingException, IOException {
+        emailSender.sendMessage(attachmentMessage);
+    }
+}
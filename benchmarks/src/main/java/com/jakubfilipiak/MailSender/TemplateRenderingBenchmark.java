@@ -0,0 +1,70 @@
+package com.jakubfilipiak.MailSender;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateRenderingBenchmark {
+
+    private TemplateRegistry templateRegistry;
+    private String content;
+    private Map<String, String> variables;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TemplateRenderingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    @Setup
+    public void setUp() {
+        StringBuilder html = new StringBuilder("<html><body><h1>Hello {{firstName}} {{lastName}}!</h1>");
+        for (int i = 0; i < 100; i++)
+            html.append("<p style=\"color:#000080\">Newsletter paragraph ").append(i)
+                    .append(" for {{firstName}}, see {{link}} for details.</p>\n");
+        content = html.append("<p>{{footer}}</p></body></html>").toString();
+
+        variables = new HashMap<>();
+        variables.put("firstName", "Jan");
+        variables.put("lastName", "Kowalski");
+        variables.put("link", "https://example.com/offer");
+        variables.put("footer", "Unsubscribe");
+
+        templateRegistry = new TemplateRegistry(10_000_000, 10);
+        templateRegistry.register(MessageTemplate.builder()
+                .name("newsletter")
+                .version(1)
+                .content(content)
+                .build());
+    }
+
+    @Benchmark
+    public String renderFromCache() {
+        return templateRegistry.render("newsletter", null, variables, true);
+    }
+
+    @Benchmark
+    public String parseOnEveryCall() {
+        return CompiledTemplate.compile(content).render(variables, true);
+    }
+}
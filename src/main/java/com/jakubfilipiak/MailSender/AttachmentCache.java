@@ -0,0 +1,129 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.activation.DataHandler;
+import javax.activation.FileTypeMap;
+import javax.mail.MessagingException;
+import javax.mail.Part;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeUtility;
+import javax.mail.internet.PreencodedMimeBodyPart;
+import javax.mail.util.ByteArrayDataSource;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ExecutionException;
+
+@Component
+public class AttachmentCache {
+
+    private static final String BASE64 = "base64";
+
+    private Cache<AttachmentKey, byte[]> encodedAttachments;
+    private long streamingThresholdBytes;
+    private FileTypeMap fileTypeMap = FileTypeMap.getDefaultFileTypeMap();
+
+    public AttachmentCache(
+            @Value("${email.attachment.cache.max-bytes:268435456}") long maxBytes,
+            @Value("${email.attachment.streaming-threshold-bytes:16777216}") long streamingThresholdBytes) {
+        // Guava splits maximumWeight across segments, so with several an attachment over a segment's share
+        // would never stay cached; a single segment keeps the whole budget usable for large files
+        this.encodedAttachments = CacheBuilder.newBuilder()
+                .concurrencyLevel(1)
+                .maximumWeight(maxBytes)
+                .weigher((AttachmentKey key, byte[] encoded) -> encoded.length)
+                .recordStats()
+                .build();
+        this.streamingThresholdBytes = streamingThresholdBytes;
+    }
+
+    public MimeBodyPart createBodyPart(String path, String name) throws
+            MessagingException,
+            FileNotFoundException {
+        AttachmentKey key = createKey(Paths.get(path));
+        // large files are encoded while the message is written instead of being held in the cache
+        if (key.getSize() >= streamingThresholdBytes)
+            return new StreamingFileBodyPart(Paths.get(key.getPath()), fileTypeMap.getContentType(name), name);
+        byte[] encoded;
+        try {
+            encoded = encodedAttachments.get(key, () -> encode(Paths.get(key.getPath()), key.getSize()));
+        } catch (ExecutionException e) {
+            throw new MessagingException("Reading attachment failed!", (Exception) e.getCause());
+        }
+        MimeBodyPart bodyPart = new PreencodedMimeBodyPart(BASE64);
+        bodyPart.setDataHandler(new DataHandler(new ByteArrayDataSource(encoded, fileTypeMap.getContentType(name))));
+        bodyPart.setDisposition(Part.ATTACHMENT);
+        try {
+            bodyPart.setFileName(MimeUtility.encodeText(name));
+        } catch (UnsupportedEncodingException e) {
+            throw new MessagingException("Failed to encode attachment name!", e);
+        }
+        return bodyPart;
+    }
+
+    public boolean isStreamed(String path) {
+        return new File(path).length() >= streamingThresholdBytes;
+    }
+
+    public CacheStats getStats() {
+        return encodedAttachments.stats();
+    }
+
+    public long getWeight() {
+        long weight = 0;
+        for (byte[] encoded : encodedAttachments.asMap().values())
+            weight += encoded.length;
+        return weight;
+    }
+
+    private AttachmentKey createKey(Path path) throws FileNotFoundException, MessagingException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new AttachmentKey(
+                    path.toAbsolutePath().toString(),
+                    attributes.lastModifiedTime().toMillis(),
+                    attributes.size());
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(path.toString());
+        } catch (IOException e) {
+            throw new MessagingException("Reading attachment failed!", e);
+        }
+    }
+
+    // encodes chunk by chunk straight into the cached array, the raw file is never held on the heap
+    private byte[] encode(Path path, long size) throws IOException {
+        ByteBuffer encoded = ByteBuffer.allocate((int) StreamingFileBodyPart.encodedLength(size));
+        try {
+            StreamingFileBodyPart.writeBase64(path, new OutputStream() {
+                @Override
+                public void write(int b) {
+                    encoded.put((byte) b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    encoded.put(b, off, len);
+                }
+            });
+        } catch (BufferOverflowException e) {
+            throw new IOException("Attachment changed while reading!", e);
+        }
+        if (encoded.hasRemaining())
+            throw new IOException("Attachment changed while reading!");
+        return encoded.array();
+    }
+}
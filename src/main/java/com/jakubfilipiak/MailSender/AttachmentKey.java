@@ -0,0 +1,11 @@
+package com.jakubfilipiak.MailSender;
+
+import lombok.Value;
+
+@Value
+public class AttachmentKey {
+
+    private final String path;
+    private final long lastModified;
+    private final long size;
+}
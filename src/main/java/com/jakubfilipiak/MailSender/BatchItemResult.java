@@ -0,0 +1,48 @@
+package com.jakubfilipiak.MailSender;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+
+@Getter
+public class BatchItemResult {
+
+    private final int index;
+    private final String recipient;
+    private BatchItemStatus status;
+    private List<String> errors;
+
+    private BatchItemResult(int index, String recipient, BatchItemStatus status, List<String> errors) {
+        this.index = index;
+        this.recipient = recipient;
+        this.status = status;
+        this.errors = errors;
+    }
+
+    static BatchItemResult sent(int index, String recipient) {
+        return new BatchItemResult(index, recipient, BatchItemStatus.SENT, Collections.emptyList());
+    }
+
+    static BatchItemResult invalid(int index, String recipient, List<String> errors) {
+        return new BatchItemResult(index, recipient, BatchItemStatus.INVALID, errors);
+    }
+
+    static BatchItemResult throttled(int index, String recipient, String error) {
+        return new BatchItemResult(index, recipient, BatchItemStatus.THROTTLED, Collections.singletonList(error));
+    }
+
+    static BatchItemResult failed(int index, String recipient, String error) {
+        return new BatchItemResult(index, recipient, BatchItemStatus.FAILED, Collections.singletonList(error));
+    }
+
+    void throttle(String error) {
+        this.status = BatchItemStatus.THROTTLED;
+        this.errors = Collections.singletonList(error);
+    }
+
+    void fail(String error) {
+        this.status = BatchItemStatus.FAILED;
+        this.errors = Collections.singletonList(error);
+    }
+}
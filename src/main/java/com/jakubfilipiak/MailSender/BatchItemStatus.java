@@ -0,0 +1,8 @@
+package com.jakubfilipiak.MailSender;
+
+public enum BatchItemStatus {
+    SENT,
+    INVALID,
+    THROTTLED,
+    FAILED
+}
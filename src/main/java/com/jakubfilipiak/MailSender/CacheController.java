@@ -0,0 +1,50 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.cache.CacheStats;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+public class CacheController {
+
+    private AttachmentCache attachmentCache;
+    private TemplateRegistry templateRegistry;
+    private DomainDeliverabilityChecker deliverabilityChecker;
+    private MessageDeduplicator messageDeduplicator;
+
+    public CacheController(
+            AttachmentCache attachmentCache,
+            TemplateRegistry templateRegistry,
+            DomainDeliverabilityChecker deliverabilityChecker,
+            MessageDeduplicator messageDeduplicator) {
+        this.attachmentCache = attachmentCache;
+        this.templateRegistry = templateRegistry;
+        this.deliverabilityChecker = deliverabilityChecker;
+        this.messageDeduplicator = messageDeduplicator;
+    }
+
+    @GetMapping("/caches")
+    public ResponseEntity getCacheStats() {
+        Map<String, Object> caches = new LinkedHashMap<>();
+        Map<String, Object> attachments = toMap(attachmentCache.getStats());
+        attachments.put("weightBytes", attachmentCache.getWeight());
+        caches.put("attachments", attachments);
+        caches.put("templates", toMap(templateRegistry.getCacheStats()));
+        caches.put("mxDomains", toMap(deliverabilityChecker.getCacheStats()));
+        caches.put("idempotency", toMap(messageDeduplicator.getCacheStats()));
+        return ResponseEntity.status(200).body(caches);
+    }
+
+    private Map<String, Object> toMap(CacheStats stats) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("hitCount", stats.hitCount());
+        values.put("missCount", stats.missCount());
+        values.put("hitRate", stats.hitRate());
+        values.put("evictionCount", stats.evictionCount());
+        return values;
+    }
+}
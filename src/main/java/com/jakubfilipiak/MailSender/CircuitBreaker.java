@@ -0,0 +1,108 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.base.Ticker;
+
+import java.util.concurrent.TimeUnit;
+
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final int halfOpenMaxCalls;
+    private final int successThreshold;
+    private final Ticker ticker;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private int trialsInFlight;
+    private int trialSuccesses;
+    private long openedAt;
+
+    public CircuitBreaker(int failureThreshold, long openMillis, int halfOpenMaxCalls, int successThreshold) {
+        this(failureThreshold, openMillis, halfOpenMaxCalls, successThreshold, Ticker.systemTicker());
+    }
+
+    CircuitBreaker(int failureThreshold, long openMillis, int halfOpenMaxCalls, int successThreshold, Ticker ticker) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.halfOpenMaxCalls = halfOpenMaxCalls;
+        this.successThreshold = successThreshold;
+        this.ticker = ticker;
+    }
+
+    public static CircuitBreaker disabled() {
+        return new CircuitBreaker(0, 0, 1, 1);
+    }
+
+    public synchronized boolean isAvailable() {
+        switch (state) {
+            case OPEN:
+                return ticker.read() - openedAt >= openNanos;
+            case HALF_OPEN:
+                return trialsInFlight < halfOpenMaxCalls;
+            default:
+                return true;
+        }
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && ticker.read() - openedAt >= openNanos) {
+            // let traffic back in gradually, a few trial calls at a time
+            state = State.HALF_OPEN;
+            trialsInFlight = 0;
+            trialSuccesses = 0;
+        }
+        if (state == State.OPEN)
+            return false;
+        if (state == State.HALF_OPEN) {
+            if (trialsInFlight >= halfOpenMaxCalls)
+                return false;
+            trialsInFlight++;
+        }
+        return true;
+    }
+
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        if (state == State.HALF_OPEN) {
+            trialsInFlight = Math.max(trialsInFlight - 1, 0);
+            if (++trialSuccesses >= successThreshold)
+                state = State.CLOSED;
+        }
+    }
+
+    // hands back trial slots of calls that ended without saying anything about the relay
+    public synchronized void release(int calls) {
+        if (state == State.HALF_OPEN)
+            trialsInFlight = Math.max(trialsInFlight - calls, 0);
+    }
+
+    public synchronized void recordFailure() {
+        if (failureThreshold <= 0)
+            return;
+        if (state == State.HALF_OPEN || ++consecutiveFailures >= failureThreshold)
+            open();
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized long getRemainingOpenMillis() {
+        if (state != State.OPEN)
+            return 0;
+        return Math.max(TimeUnit.NANOSECONDS.toMillis(openNanos - (ticker.read() - openedAt)), 0);
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = ticker.read();
+        consecutiveFailures = 0;
+        trialsInFlight = 0;
+    }
+}
@@ -0,0 +1,63 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.escape.Escaper;
+import com.google.common.html.HtmlEscapers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class CompiledTemplate {
+
+    private static final String VARIABLE_START = "{{";
+    private static final String VARIABLE_END = "}}";
+
+    private final String[] literals;
+    private final String[] variables;
+    private final int literalsLength;
+
+    private CompiledTemplate(String[] literals, String[] variables) {
+        this.literals = literals;
+        this.variables = variables;
+        int length = 0;
+        for (String literal : literals)
+            length += literal.length();
+        this.literalsLength = length;
+    }
+
+    public static CompiledTemplate compile(String content) throws IllegalArgumentException {
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        int position = 0;
+        int start;
+        while ((start = content.indexOf(VARIABLE_START, position)) >= 0) {
+            int end = content.indexOf(VARIABLE_END, start + VARIABLE_START.length());
+            if (end < 0)
+                throw new IllegalArgumentException("Unclosed template variable at " + start + "!");
+            String variable = content.substring(start + VARIABLE_START.length(), end).trim();
+            if (variable.isEmpty())
+                throw new IllegalArgumentException("Empty template variable at " + start + "!");
+            literals.add(content.substring(position, start));
+            variables.add(variable);
+            position = end + VARIABLE_END.length();
+        }
+        literals.add(content.substring(position));
+        return new CompiledTemplate(literals.toArray(new String[0]), variables.toArray(new String[0]));
+    }
+
+    public String render(Map<String, String> values, boolean escapeHtml) throws IllegalArgumentException {
+        Escaper escaper = HtmlEscapers.htmlEscaper();
+        StringBuilder rendered = new StringBuilder(literalsLength + 16 * variables.length);
+        for (int i = 0; i < variables.length; i++) {
+            String value = values != null ? values.get(variables[i]) : null;
+            if (value == null)
+                throw new IllegalArgumentException("Missing template variable " + variables[i] + "!");
+            rendered.append(literals[i]).append(escapeHtml ? escaper.escape(value) : value);
+        }
+        return rendered.append(literals[variables.length]).toString();
+    }
+
+    public int getWeight() {
+        return literalsLength;
+    }
+}
@@ -0,0 +1,24 @@
+package com.jakubfilipiak.MailSender;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Instant;
+
+@Getter
+@Builder
+@JsonDeserialize(builder = DeadLetter.DeadLetterBuilder.class)
+public class DeadLetter {
+
+    private final String id;
+    private final MessageParams params;
+    private final int attempts;
+    private final String lastError;
+    private final Instant deadAt;
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static class DeadLetterBuilder {
+    }
+}
@@ -0,0 +1,74 @@
+package com.jakubfilipiak.MailSender;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+public class DeadLetterController {
+
+    private DeadLetterStore deadLetterStore;
+    private EmailDispatcher emailDispatcher;
+    private OutboxJournal outboxJournal;
+
+    public DeadLetterController(
+            DeadLetterStore deadLetterStore,
+            EmailDispatcher emailDispatcher,
+            OutboxJournal outboxJournal) {
+        this.deadLetterStore = deadLetterStore;
+        this.emailDispatcher = emailDispatcher;
+        this.outboxJournal = outboxJournal;
+    }
+
+    @GetMapping("/dead-letters")
+    public ResponseEntity getDeadLetters(
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.status(200)
+                .header("X-Total-Count", String.valueOf(deadLetterStore.size()))
+                .body(deadLetterStore.list(offset, limit));
+    }
+
+    @GetMapping("/dead-letters/{id}")
+    public ResponseEntity getDeadLetter(@PathVariable String id) {
+        DeadLetter deadLetter = deadLetterStore.get(id);
+        if (deadLetter == null)
+            return ResponseEntity.status(404).body("Unknown dead letter id!");
+        return ResponseEntity.status(200).body(deadLetter);
+    }
+
+    @PostMapping("/dead-letters/{id}/replay")
+    public ResponseEntity replayDeadLetter(@PathVariable String id) {
+        try {
+            MessageJob job = emailDispatcher.replayDeadLetter(id);
+            if (job == null)
+                return ResponseEntity.status(404).body("Unknown dead letter id!");
+            return ResponseEntity.status(202)
+                    .location(URI.create("/messages/" + job.getId()))
+                    .body(job);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(503)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body(e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/dead-letters/{id}")
+    public ResponseEntity deleteDeadLetter(@PathVariable String id) {
+        if (deadLetterStore.remove(id) == null)
+            return ResponseEntity.status(404).body("Unknown dead letter id!");
+        outboxJournal.ack(id);
+        return ResponseEntity.status(204).build();
+    }
+}
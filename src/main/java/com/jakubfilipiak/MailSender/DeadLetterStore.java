@@ -0,0 +1,57 @@
+package com.jakubfilipiak.MailSender;
+
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+@Component
+public class DeadLetterStore {
+
+    private OutboxJournal outboxJournal;
+    private Map<String, DeadLetter> deadLetters = new ConcurrentHashMap<>();
+
+    public DeadLetterStore(OutboxJournal outboxJournal) {
+        this.outboxJournal = outboxJournal;
+    }
+
+    @PostConstruct
+    public void load() throws IOException {
+        deadLetters.putAll(outboxJournal.takeRecoveredDeadLetters());
+    }
+
+    public void add(DeadLetter deadLetter) throws IOException {
+        outboxJournal.appendDeadLetter(deadLetter);
+        deadLetters.put(deadLetter.getId(), deadLetter);
+    }
+
+    public DeadLetter get(String id) {
+        return deadLetters.get(id);
+    }
+
+    public DeadLetter remove(String id) {
+        return deadLetters.remove(id);
+    }
+
+    // puts back a dead letter claimed by remove(), its journal entry was never acked
+    public void restore(DeadLetter deadLetter) {
+        deadLetters.put(deadLetter.getId(), deadLetter);
+    }
+
+    public List<DeadLetter> list(int offset, int limit) {
+        return deadLetters.values().stream()
+                .sorted(Comparator.comparing(DeadLetter::getDeadAt))
+                .skip(offset)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    public int size() {
+        return deadLetters.size();
+    }
+}
@@ -0,0 +1,24 @@
+package com.jakubfilipiak.MailSender;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Instant;
+
+@Getter
+@Builder
+public class DeliveryEvent {
+
+    private final long sequence;
+    private final DeliveryEventType type;
+    private final String messageId; // null for messages sent synchronously
+    private final String recipient;
+    private final int attempts;
+    private final String error;
+    private final Instant occurredAt;
+
+    // events of one queued message replace each other while they wait for a slow subscriber
+    String getCoalescingKey() {
+        return messageId != null ? messageId : "#" + sequence;
+    }
+}
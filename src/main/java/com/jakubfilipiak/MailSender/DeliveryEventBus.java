@@ -0,0 +1,57 @@
+package com.jakubfilipiak.MailSender;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+@Component
+public class DeliveryEventBus {
+
+    private static final Logger log = LoggerFactory.getLogger(DeliveryEventBus.class);
+
+    private List<Consumer<DeliveryEvent>> subscribers = new CopyOnWriteArrayList<>();
+    private AtomicLong sequence = new AtomicLong();
+
+    // subscribers are called on the sending thread, so they may only hand the event over
+    public void subscribe(Consumer<DeliveryEvent> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(Consumer<DeliveryEvent> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    // direct sends have no message id and are taken and settled in one call, so both events go out together
+    public void publishOutcome(String recipient, DeliveryEventType outcome, String error) {
+        if (outcome != DeliveryEventType.REJECTED)
+            publish(DeliveryEventType.ACCEPTED, null, recipient, 0, null);
+        publish(outcome, null, recipient, outcome == DeliveryEventType.FAILED ? 1 : 0, error);
+    }
+
+    public void publish(DeliveryEventType type, String messageId, String recipient, int attempts, String error) {
+        if (subscribers.isEmpty())
+            return;
+        DeliveryEvent event = DeliveryEvent.builder()
+                .sequence(sequence.incrementAndGet())
+                .type(type)
+                .messageId(messageId)
+                .recipient(recipient)
+                .attempts(attempts)
+                .error(error)
+                .occurredAt(Instant.now())
+                .build();
+        for (Consumer<DeliveryEvent> subscriber : subscribers) {
+            try {
+                subscriber.accept(event);
+            } catch (RuntimeException e) {
+                log.warn("Delivery event subscriber failed", e);
+            }
+        }
+    }
+}
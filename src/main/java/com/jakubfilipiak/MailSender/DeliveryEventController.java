@@ -0,0 +1,70 @@
+package com.jakubfilipiak.MailSender;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+public class DeliveryEventController {
+
+    private DeliveryEventStreams eventStreams;
+    private WebhookDispatcher webhookDispatcher;
+
+    public DeliveryEventController(DeliveryEventStreams eventStreams, WebhookDispatcher webhookDispatcher) {
+        this.eventStreams = eventStreams;
+        this.webhookDispatcher = webhookDispatcher;
+    }
+
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamEvents() {
+        try {
+            return ResponseEntity.status(200).body(eventStreams.open());
+        } catch (RejectedExecutionException e) {
+            // the emitter handler only accepts an emitter body, so the rejection goes out without one
+            return ResponseEntity.status(429).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+    }
+
+    @PostMapping("/webhooks")
+    public ResponseEntity registerWebhook(@RequestBody Map<String, String> webhook) {
+        try {
+            WebhookSubscription subscription = webhookDispatcher.register(webhook.get("url"));
+            return ResponseEntity.created(URI.create("/webhooks/" + subscription.getId())).body(subscription);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(412).body(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(429).body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/webhooks")
+    public ResponseEntity getWebhooks() {
+        return ResponseEntity.status(200).body(webhookDispatcher.getSubscriptions());
+    }
+
+    @GetMapping("/webhooks/{id}")
+    public ResponseEntity getWebhook(@PathVariable String id) {
+        WebhookSubscription subscription = webhookDispatcher.getSubscription(id);
+        if (subscription == null)
+            return ResponseEntity.status(404).body("Unknown webhook!");
+        return ResponseEntity.status(200).body(subscription);
+    }
+
+    @DeleteMapping("/webhooks/{id}")
+    public ResponseEntity unregisterWebhook(@PathVariable String id) {
+        if (webhookDispatcher.unregister(id) == null)
+            return ResponseEntity.status(404).body("Unknown webhook!");
+        return ResponseEntity.status(204).build();
+    }
+}
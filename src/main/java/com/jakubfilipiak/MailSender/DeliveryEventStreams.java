@@ -0,0 +1,187 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+@Component
+public class DeliveryEventStreams {
+
+    private static final int SEND_BATCH = 100;
+
+    private DeliveryEventBus eventBus;
+    // a stream runs at most one send task, so there are never more sender threads than open streams
+    private ExecutorService senders;
+    private ScheduledExecutorService watchdog;
+    private Set<Stream> openStreams = ConcurrentHashMap.newKeySet();
+    private int bufferCapacity;
+    private long timeoutMillis;
+    private long sendTimeoutNanos;
+    private long heartbeatNanos;
+    private int maxStreams;
+
+    public DeliveryEventStreams(
+            DeliveryEventBus eventBus,
+            @Value("${email.events.sse.buffer-capacity:1000}") int bufferCapacity,
+            @Value("${email.events.sse.timeout-ms:1800000}") long timeoutMillis,
+            @Value("${email.events.sse.send-timeout-ms:10000}") long sendTimeoutMillis,
+            @Value("${email.events.sse.heartbeat-ms:15000}") long heartbeatMillis,
+            @Value("${email.events.sse.max-streams:100}") int maxStreams) {
+        this.eventBus = eventBus;
+        this.bufferCapacity = bufferCapacity;
+        this.timeoutMillis = timeoutMillis;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        this.heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(heartbeatMillis);
+        this.maxStreams = maxStreams;
+        this.senders = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("email-events-%d")
+                .setDaemon(true)
+                .build());
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("email-events-watchdog")
+                .setDaemon(true)
+                .build());
+        long checkMillis = Math.max(Math.min(sendTimeoutMillis, heartbeatMillis) / 2, 1);
+        watchdog.scheduleWithFixedDelay(this::checkStreams, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        watchdog.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    public SseEmitter open() throws RejectedExecutionException {
+        if (openStreams.size() >= maxStreams)
+            throw new RejectedExecutionException("Too many event streams!");
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Stream stream = new Stream(emitter);
+        emitter.onCompletion(stream::close);
+        emitter.onTimeout(stream::close);
+        openStreams.add(stream);
+        eventBus.subscribe(stream);
+        return emitter;
+    }
+
+    public int getOpenStreams() {
+        return openStreams.size();
+    }
+
+    private void checkStreams() {
+        long now = System.nanoTime();
+        for (Stream stream : openStreams) {
+            if (stream.isSendingSince(now - sendTimeoutNanos))
+                stream.abandon();
+            // a client that went away silently is only noticed when a write fails, so idle streams get pinged
+            else if (stream.isIdleSince(now - heartbeatNanos))
+                stream.ping();
+        }
+    }
+
+    private class Stream implements Consumer<DeliveryEvent> {
+
+        private SseEmitter emitter;
+        private EventBuffer buffer = new EventBuffer(bufferCapacity);
+        private AtomicBoolean sending = new AtomicBoolean();
+        private AtomicBoolean closed = new AtomicBoolean();
+        private volatile long sendStartedAt;
+        private volatile long sentAt = System.nanoTime();
+        private volatile boolean pingDue;
+
+        private Stream(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void accept(DeliveryEvent event) {
+            buffer.offer(event);
+            // a client that lets the buffer overflow is not keeping up, it reconnects rather than missing events
+            if (buffer.getDroppedEvents() > 0) {
+                abandon();
+                return;
+            }
+            scheduleSend();
+        }
+
+        private void ping() {
+            pingDue = true;
+            scheduleSend();
+        }
+
+        // at most one send task per stream, the task drains whatever piled up meanwhile
+        private void scheduleSend() {
+            if (sending.compareAndSet(false, true))
+                senders.execute(this::send);
+        }
+
+        private boolean isSendingSince(long nanos) {
+            long started = sendStartedAt;
+            return started != 0 && started - nanos < 0;
+        }
+
+        private boolean isIdleSince(long nanos) {
+            return sendStartedAt == 0 && sentAt - nanos < 0;
+        }
+
+        private void send() {
+            do {
+                try {
+                    List<DeliveryEvent> events;
+                    while (!closed.get() && !(events = buffer.drain(SEND_BATCH)).isEmpty()) {
+                        for (DeliveryEvent event : events) {
+                            sendStartedAt = System.nanoTime();
+                            emitter.send(SseEmitter.event()
+                                    .id(String.valueOf(event.getSequence()))
+                                    .name(event.getType().name().toLowerCase())
+                                    .data(event));
+                            sendStartedAt = 0;
+                            sentAt = System.nanoTime();
+                        }
+                    }
+                    if (pingDue && !closed.get()) {
+                        pingDue = false;
+                        sendStartedAt = System.nanoTime();
+                        emitter.send(SseEmitter.event().comment("ping"));
+                        sentAt = System.nanoTime();
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    // the client went away
+                    close();
+                    emitter.completeWithError(e);
+                    return;
+                } finally {
+                    sendStartedAt = 0;
+                    sending.set(false);
+                }
+            } while (!closed.get() && (buffer.size() > 0 || pingDue) && sending.compareAndSet(false, true));
+        }
+
+        // completing takes the emitter's lock, which a blocked send holds, so it runs on its own sender thread
+        private void abandon() {
+            if (close())
+                senders.execute(emitter::complete);
+        }
+
+        private boolean close() {
+            if (!closed.compareAndSet(false, true))
+                return false;
+            eventBus.unsubscribe(this);
+            openStreams.remove(this);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.jakubfilipiak.MailSender;
+
+public enum DeliveryEventType {
+    ACCEPTED,
+    SENT,
+    DEFERRED,
+    FAILED,
+    REJECTED // refused before it was taken for delivery: invalid, throttled or no capacity left
+}
@@ -0,0 +1,69 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.base.Ascii;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.naming.NamingException;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class DomainDeliverabilityChecker {
+
+    private MxResolver mxResolver;
+    private boolean enabled;
+    private Cache<String, Boolean> domains;
+
+    @Autowired
+    public DomainDeliverabilityChecker(
+            MxResolver mxResolver,
+            @Value("${email.validation.mx-check.enabled:false}") boolean enabled,
+            @Value("${email.validation.mx-check.ttl-seconds:3600}") long ttlSeconds,
+            @Value("${email.validation.mx-check.max-domains:10000}") long maxDomains) {
+        this(mxResolver, enabled, ttlSeconds, maxDomains, Ticker.systemTicker());
+    }
+
+    DomainDeliverabilityChecker(
+            MxResolver mxResolver,
+            boolean enabled,
+            long ttlSeconds,
+            long maxDomains,
+            Ticker ticker) {
+        this.mxResolver = mxResolver;
+        this.enabled = enabled;
+        this.domains = CacheBuilder.newBuilder()
+                .maximumSize(maxDomains)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isDeliverable(String domain) {
+        String key = Ascii.toLowerCase(domain);
+        Boolean deliverable = domains.getIfPresent(key);
+        if (deliverable != null)
+            return deliverable;
+        try {
+            deliverable = !mxResolver.resolveMailExchangers(key).isEmpty();
+        } catch (NamingException e) {
+            // a DNS outage must not reject mail, and is not remembered either
+            return true;
+        }
+        domains.put(key, deliverable);
+        return deliverable;
+    }
+
+    public CacheStats getCacheStats() {
+        return domains.stats();
+    }
+}
@@ -0,0 +1,74 @@
+package com.jakubfilipiak.MailSender;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+// turns away requests that would start new sends once the service is draining, and counts the ones in progress
+@Component
+public class DrainFilter extends OncePerRequestFilter {
+
+    private ServiceState serviceState;
+
+    public DrainFilter(ServiceState serviceState) {
+        this.serviceState = serviceState;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getServletPath();
+        return !"POST".equals(request.getMethod())
+                || !(path.startsWith("/messages") || path.startsWith("/merge-jobs") || path.startsWith("/dead-letters"));
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+        if (!serviceState.tryStartRequest()) {
+            response.setStatus(503);
+            response.setHeader("Retry-After", "1");
+            response.getWriter().write("Shutting down!");
+            return;
+        }
+        boolean async = false;
+        try {
+            filterChain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new RequestFinishedListener());
+                async = true;
+            }
+        } finally {
+            if (!async)
+                serviceState.requestFinished();
+        }
+    }
+
+    private class RequestFinishedListener implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            serviceState.requestFinished();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
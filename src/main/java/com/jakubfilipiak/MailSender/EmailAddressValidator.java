@@ -1,19 +1,96 @@
 package com.jakubfilipiak.MailSender;
 
 import com.google.common.base.Preconditions;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 @Component
 public class EmailAddressValidator {
 
-    private Pattern emailPattern = Pattern.compile(".+@.+\\..+");
+    private static final int MAX_ADDRESS_LENGTH = 254;
+    private static final int MAX_LOCAL_PART_LENGTH = 64;
+    private static final int MAX_LABEL_LENGTH = 63;
+
+    private DomainDeliverabilityChecker deliverabilityChecker;
+
+    public EmailAddressValidator() {
+        this(null);
+    }
+
+    @Autowired
+    public EmailAddressValidator(DomainDeliverabilityChecker deliverabilityChecker) {
+        this.deliverabilityChecker = deliverabilityChecker;
+    }
 
     public boolean isCorrect(String address) throws IllegalArgumentException {
         Preconditions.checkArgument(address != null);
-        Matcher emailMatcher = emailPattern.matcher(address);
-        return emailMatcher.matches();
+        int at = findDomainSeparator(address);
+        if (at < 0 || !isValidDomain(address, at + 1))
+            return false;
+        return deliverabilityChecker == null
+                || !deliverabilityChecker.isEnabled()
+                || deliverabilityChecker.isDeliverable(address.substring(at + 1));
+    }
+
+    // validates the dot-atom local part (RFC 5322 3.2.3) and returns the index of its '@'
+    private int findDomainSeparator(String address) {
+        int length = address.length();
+        if (length > MAX_ADDRESS_LENGTH)
+            return -1;
+        char previous = '.';
+        for (int i = 0; i < length; i++) {
+            char c = address.charAt(i);
+            if (c == '@')
+                return i == 0 || i > MAX_LOCAL_PART_LENGTH || previous == '.' ? -1 : i;
+            if (c == '.') {
+                if (previous == '.')
+                    return -1;
+            } else if (!isAtext(c)) {
+                return -1;
+            }
+            previous = c;
+        }
+        return -1;
+    }
+
+    // validates dot-separated LDH labels (RFC 5321 4.1.2), requiring at least two of them
+    private boolean isValidDomain(String address, int start) {
+        int length = address.length();
+        int labels = 0;
+        int labelLength = 0;
+        char previous = '.';
+        for (int i = start; i < length; i++) {
+            char c = address.charAt(i);
+            if (c == '.') {
+                if (labelLength == 0 || previous == '-')
+                    return false;
+                labels++;
+                labelLength = 0;
+            } else if (isLetterOrDigit(c) || (c == '-' && labelLength > 0)) {
+                if (++labelLength > MAX_LABEL_LENGTH)
+                    return false;
+            } else {
+                return false;
+            }
+            previous = c;
+        }
+        return labelLength > 0 && previous != '-' && labels > 0;
+    }
+
+    private boolean isLetterOrDigit(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    private boolean isAtext(char c) {
+        if (isLetterOrDigit(c))
+            return true;
+        switch (c) {
+            case '!': case '#': case '$': case '%': case '&': case '\'': case '*': case '+':
+            case '-': case '/': case '=': case '?': case '^': case '_': case '`': case '{':
+            case '|': case '}': case '~':
+                return true;
+            default:
+                return false;
+        }
     }
 }
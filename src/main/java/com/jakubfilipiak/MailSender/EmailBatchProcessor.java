@@ -0,0 +1,86 @@
+package com.jakubfilipiak.MailSender;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@Service
+public class EmailBatchProcessor {
+
+    private EmailSender emailSender;
+    private DeliveryEventBus eventBus;
+    private ObjectMapper objectMapper;
+    private int chunkSize;
+
+    public EmailBatchProcessor(
+            EmailSender emailSender,
+            DeliveryEventBus eventBus,
+            ObjectMapper objectMapper,
+            @Value("${email.batch.chunk-size:100}") int chunkSize) {
+        this.emailSender = emailSender;
+        this.eventBus = eventBus;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    public List<BatchItemResult> process(InputStream input) throws IOException {
+        List<BatchItemResult> results = new ArrayList<>();
+        List<MessageParams> chunk = new ArrayList<>(chunkSize);
+        int index = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY)
+                throw new JsonParseException(parser, "Expected an array of messages!");
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null)
+                    throw new JsonParseException(parser, "Unexpected end of messages array!");
+                JsonNode item = parser.readValueAsTree();
+                try {
+                    chunk.add(objectMapper.treeToValue(item, MessageParams.class));
+                } catch (JsonProcessingException e) {
+                    flush(chunk, index, results);
+                    results.add(BatchItemResult.invalid(index, null, Collections.singletonList("Malformed message!")));
+                }
+                index++;
+                if (chunk.size() == chunkSize)
+                    flush(chunk, index, results);
+            }
+            flush(chunk, index, results);
+        }
+        return results;
+    }
+
+    private void flush(List<MessageParams> chunk, int nextIndex, List<BatchItemResult> results) {
+        if (chunk.isEmpty())
+            return;
+        List<BatchItemResult> chunkResults = emailSender.sendMessages(chunk, nextIndex - chunk.size());
+        for (BatchItemResult result : chunkResults)
+            publishOutcome(result);
+        results.addAll(chunkResults);
+        chunk.clear();
+    }
+
+    private void publishOutcome(BatchItemResult result) {
+        switch (result.getStatus()) {
+            case SENT:
+                eventBus.publishOutcome(result.getRecipient(), DeliveryEventType.SENT, null);
+                break;
+            case FAILED:
+                eventBus.publishOutcome(result.getRecipient(), DeliveryEventType.FAILED, result.getErrors().get(0));
+                break;
+            default:
+                eventBus.publishOutcome(result.getRecipient(), DeliveryEventType.REJECTED, result.getErrors().get(0));
+        }
+    }
+}
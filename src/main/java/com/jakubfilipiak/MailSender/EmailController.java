@@ -1,29 +1,115 @@
 package com.jakubfilipiak.MailSender;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mail.MailException;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.mail.MessagingException;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 public class EmailController {
 
     private EmailSender emailSender;
+    private EmailDispatcher emailDispatcher;
+    private EmailBatchProcessor batchProcessor;
+    private FailureClassifier failureClassifier;
+    private SendMetrics sendMetrics;
+    private SendExecutor sendExecutor;
+    private MessageDeduplicator messageDeduplicator;
+    private DeliveryEventBus eventBus;
+    private boolean queueEnabled;
+    private boolean asyncExecution;
 
-    public EmailController(EmailSender emailSender) {
+    public EmailController(
+            EmailSender emailSender,
+            EmailDispatcher emailDispatcher,
+            EmailBatchProcessor batchProcessor,
+            FailureClassifier failureClassifier,
+            SendMetrics sendMetrics,
+            SendExecutor sendExecutor,
+            MessageDeduplicator messageDeduplicator,
+            DeliveryEventBus eventBus,
+            @Value("${email.queue.enabled:false}") boolean queueEnabled,
+            @Value("${email.execution.mode:servlet}") String executionMode) {
         this.emailSender = emailSender;
+        this.emailDispatcher = emailDispatcher;
+        this.batchProcessor = batchProcessor;
+        this.failureClassifier = failureClassifier;
+        this.sendMetrics = sendMetrics;
+        this.sendExecutor = sendExecutor;
+        this.messageDeduplicator = messageDeduplicator;
+        this.eventBus = eventBus;
+        this.queueEnabled = queueEnabled;
+        this.asyncExecution = parseExecutionMode(executionMode);
     }
 
+    // a completed response is returned as is, so only sends still running elsewhere go through async dispatch
     @PostMapping("/messages")
-    public ResponseEntity sendMessage(@RequestBody MessageParams messageParams) {
+    public Object sendMessage(
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestBody MessageParams messageParams) {
+        CompletableFuture<ResponseEntity> response;
+        try {
+            response = messageDeduplicator.deduplicate(
+                    idempotencyKey, messageParams, () -> dispatchMessage(messageParams), this::isFinal);
+        } catch (IllegalStateException e) {
+            response = CompletableFuture.completedFuture(ResponseEntity.status(422).body(e.getMessage()));
+        }
+        response = response.thenApply(this::recordOutcome);
+        return response.isDone() ? response.join() : response;
+    }
+
+    private CompletableFuture<ResponseEntity> dispatchMessage(MessageParams messageParams) {
+        CompletableFuture<ResponseEntity> response;
+        if (queueEnabled)
+            response = CompletableFuture.completedFuture(enqueueMessage(messageParams));
+        else if (asyncExecution)
+            response = deliverMessageAsync(messageParams);
+        else
+            response = CompletableFuture.completedFuture(deliverMessage(messageParams));
+        return response.thenApply(dispatched -> publishOutcome(messageParams, dispatched));
+    }
+
+    private CompletableFuture<ResponseEntity> deliverMessageAsync(MessageParams messageParams) {
+        try {
+            return CompletableFuture.supplyAsync(() -> deliverMessage(messageParams), sendExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(503)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body("Too many sends in progress!"));
+        }
+    }
+
+    private boolean isFinal(ResponseEntity response) {
+        int status = response.getStatusCodeValue();
+        return status != 429 && status < 500;
+    }
+
+    private ResponseEntity deliverMessage(MessageParams messageParams) {
         try {
             emailSender.sendMessage(messageParams);
             return ResponseEntity.status(200).body("OK");
+        } catch (SendRateLimitedException e) {
+            return ResponseEntity.status(429)
+                    .header(HttpHeaders.RETRY_AFTER, toRetryAfterSeconds(e.getRetryAfterMillis()))
+                    .body(e.getMessage());
         } catch (MailException e) {
+            if (failureClassifier.isTransient(e))
+                return scheduleRetry(messageParams, e);
             return ResponseEntity.status(403).body(e.getMessage());
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(412).body(e.getMessage());
@@ -33,4 +119,88 @@ public class EmailController {
             return ResponseEntity.status(500).body(e.getMessage());
         }
     }
+
+    @PostMapping("/messages/batch")
+    public ResponseEntity sendMessages(InputStream messagesJson) {
+        try {
+            return ResponseEntity.status(200).body(batchProcessor.process(messagesJson));
+        } catch (JsonProcessingException e) {
+            return ResponseEntity.status(400).body(e.getOriginalMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/messages/{id}")
+    public ResponseEntity getMessage(@PathVariable String id) {
+        MessageJob job = emailDispatcher.getJob(id);
+        if (job == null)
+            return ResponseEntity.status(404).body("Unknown message id!");
+        return ResponseEntity.status(200).body(job);
+    }
+
+    private ResponseEntity scheduleRetry(MessageParams messageParams, MailException failure) {
+        try {
+            MessageJob job = emailDispatcher.submitForRetry(messageParams, failure);
+            return ResponseEntity.status(202)
+                    .location(URI.create("/messages/" + job.getId()))
+                    .body(job);
+        } catch (IOException e) {
+            return ResponseEntity.status(403).body(failure.getMessage());
+        }
+    }
+
+    // queued and retried messages (202) are published by the dispatcher under their job id
+    private ResponseEntity publishOutcome(MessageParams messageParams, ResponseEntity response) {
+        int status = response.getStatusCodeValue();
+        if (status == 202)
+            return response;
+        String error = status == 200 ? null : String.valueOf(response.getBody());
+        if (status == 200)
+            eventBus.publishOutcome(messageParams.getRecipient(), DeliveryEventType.SENT, error);
+        else if (status == 403 || status == 500)
+            eventBus.publishOutcome(messageParams.getRecipient(), DeliveryEventType.FAILED, error);
+        else eventBus.publishOutcome(messageParams.getRecipient(), DeliveryEventType.REJECTED, error);
+        return response;
+    }
+
+    private ResponseEntity recordOutcome(ResponseEntity response) {
+        sendMetrics.recordOutcome(response.getStatusCodeValue());
+        return response;
+    }
+
+    private boolean parseExecutionMode(String executionMode) {
+        switch (executionMode) {
+            case "servlet":
+                return false;
+            case "async":
+                return true;
+            default:
+                throw new IllegalArgumentException("Wrong email.execution.mode!");
+        }
+    }
+
+    private String toRetryAfterSeconds(long retryAfterMillis) {
+        return String.valueOf((retryAfterMillis + 999) / 1000);
+    }
+
+    private ResponseEntity enqueueMessage(MessageParams messageParams) {
+        try {
+            emailSender.validateMessage(messageParams);
+            MessageJob job = emailDispatcher.submit(messageParams);
+            return ResponseEntity.status(202)
+                    .location(URI.create("/messages/" + job.getId()))
+                    .body(job);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(412).body(e.getMessage());
+        } catch (FileNotFoundException e) {
+            return ResponseEntity.status(410).body(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(503)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body(e.getMessage());
+        }
+    }
 }
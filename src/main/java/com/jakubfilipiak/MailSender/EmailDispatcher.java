@@ -0,0 +1,307 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+@EnableConfigurationProperties(LaneProperties.class)
+public class EmailDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(EmailDispatcher.class);
+    private static final long REQUEUE_DELAY_MILLIS = 100;
+
+    private EmailSender emailSender;
+    private OutboxJournal outboxJournal;
+    private RetryScheduler retryScheduler;
+    private FailureClassifier failureClassifier;
+    private DeadLetterStore deadLetterStore;
+    private DeliveryEventBus eventBus;
+    private LaneQueue queue;
+    private Cache<String, MessageJob> jobs;
+    private ExecutorService workers;
+    private int dispatcherThreads;
+    private AtomicInteger activeJobs = new AtomicInteger();
+    private Map<MessagePriority, Integer> reservedWorkers = new EnumMap<>(MessagePriority.class);
+    private Map<MessagePriority, Timer> laneTimers = new EnumMap<>(MessagePriority.class);
+
+    public EmailDispatcher(
+            EmailSender emailSender,
+            OutboxJournal outboxJournal,
+            RetryScheduler retryScheduler,
+            FailureClassifier failureClassifier,
+            DeadLetterStore deadLetterStore,
+            DeliveryEventBus eventBus,
+            LaneProperties laneProperties,
+            MeterRegistry meterRegistry,
+            @Value("${email.queue.job-retention-minutes:60}") long jobRetentionMinutes,
+            @Value("${email.queue.max-jobs:100000}") long maxJobs,
+            @Value("${email.dispatcher.threads:4}") int dispatcherThreads) throws IllegalArgumentException {
+        this.emailSender = emailSender;
+        this.outboxJournal = outboxJournal;
+        this.retryScheduler = retryScheduler;
+        this.failureClassifier = failureClassifier;
+        this.deadLetterStore = deadLetterStore;
+        this.eventBus = eventBus;
+        this.queue = new LaneQueue(laneProperties);
+        // an evicted job still gets sent, only its status can no longer be looked up
+        this.jobs = CacheBuilder.newBuilder()
+                .expireAfterWrite(jobRetentionMinutes, TimeUnit.MINUTES)
+                .maximumSize(maxJobs)
+                .build();
+        this.dispatcherThreads = dispatcherThreads;
+        int reserved = 0;
+        for (MessagePriority priority : MessagePriority.values()) {
+            LaneProperties.Lane lane = laneProperties.getLane(priority);
+            reservedWorkers.put(priority, lane.getReservedWorkers());
+            reserved += lane.getReservedWorkers();
+            laneTimers.put(priority, Timer.builder("email.lane.latency")
+                    .description("Time from submitting a queued message until it is sent")
+                    .tag("lane", priority.name().toLowerCase())
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .sla(Duration.ofMillis(lane.getSloMs()))
+                    .register(meterRegistry));
+        }
+        Preconditions.checkArgument(reserved < dispatcherThreads, "Wrong number of reserved workers!");
+        this.workers = Executors.newFixedThreadPool(dispatcherThreads, new ThreadFactoryBuilder()
+                .setNameFormat("email-dispatcher-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        // reserved workers keep a lane moving under bulk load, the relay pools are checked to fit every worker
+        int shared = dispatcherThreads;
+        for (Map.Entry<MessagePriority, Integer> entry : reservedWorkers.entrySet()) {
+            Set<MessagePriority> lane = EnumSet.of(entry.getKey());
+            for (int i = 0; i < entry.getValue(); i++)
+                workers.execute(() -> drainQueue(lane));
+            shared -= entry.getValue();
+        }
+        for (int i = 0; i < shared; i++)
+            workers.execute(() -> drainQueue(EnumSet.allOf(MessagePriority.class)));
+        Map<String, MessageParams> recoveredEntries = outboxJournal.takeRecoveredEntries();
+        if (!recoveredEntries.isEmpty()) {
+            Thread replay = new Thread(() -> replay(recoveredEntries), "email-outbox-replay");
+            replay.setDaemon(true);
+            replay.start();
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        workers.shutdownNow();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    public MessageJob submit(MessageParams params) throws RejectedExecutionException, IOException {
+        if (queue.remainingCapacity(MessagePriority.of(params)) == 0)
+            throw new RejectedExecutionException("Message queue is full!");
+        MessageJob job = new MessageJob(UUID.randomUUID().toString(), params);
+        outboxJournal.append(job.getId(), params);
+        jobs.put(job.getId(), job);
+        if (!queue.offer(job)) {
+            jobs.invalidate(job.getId());
+            outboxJournal.ack(job.getId());
+            throw new RejectedExecutionException("Message queue is full!");
+        }
+        publish(DeliveryEventType.ACCEPTED, job);
+        return job;
+    }
+
+    // the first half of a blocking submit, hand the job to enqueueJournaled() once the append completes
+    public CompletableFuture<MessageJob> journal(MessageParams params) {
+        MessageJob job = new MessageJob(UUID.randomUUID().toString(), params);
+        return outboxJournal.appendAsync(job.getId(), params).thenApply(written -> job);
+    }
+
+    public MessageJob enqueueJournaled(MessageJob job) throws InterruptedException {
+        jobs.put(job.getId(), job);
+        try {
+            queue.put(job);
+        } catch (InterruptedException e) {
+            jobs.invalidate(job.getId());
+            outboxJournal.ack(job.getId());
+            throw e;
+        }
+        publish(DeliveryEventType.ACCEPTED, job);
+        return job;
+    }
+
+    // acks a journaled job that will never be enqueued, so it is not replayed on the next start
+    public void discardJournaled(CompletableFuture<MessageJob> journaled) {
+        journaled.thenAccept(job -> outboxJournal.ack(job.getId()));
+    }
+
+    public MessageJob submitForRetry(MessageParams params, Exception failure) throws IOException {
+        MessageJob job = new MessageJob(UUID.randomUUID().toString(), params);
+        outboxJournal.append(job.getId(), params);
+        jobs.put(job.getId(), job);
+        publish(DeliveryEventType.ACCEPTED, job);
+        job.markDeferred(failure.getMessage());
+        publish(DeliveryEventType.DEFERRED, job);
+        retryScheduler.schedule(job, retryScheduler.nextDelayMillis(job.getFailedAttempts()), this::requeue);
+        return job;
+    }
+
+    public MessageJob replayDeadLetter(String id) throws RejectedExecutionException, IOException {
+        // claiming by removal means concurrent replays of one dead letter send it only once
+        DeadLetter deadLetter = deadLetterStore.remove(id);
+        if (deadLetter == null)
+            return null;
+        try {
+            if (queue.remainingCapacity(MessagePriority.of(deadLetter.getParams())) == 0)
+                throw new RejectedExecutionException("Message queue is full!");
+            outboxJournal.append(id, deadLetter.getParams());
+        } catch (RejectedExecutionException | IOException e) {
+            deadLetterStore.restore(deadLetter);
+            throw e;
+        }
+        MessageJob job = new MessageJob(id, deadLetter.getParams());
+        jobs.put(id, job);
+        requeue(job);
+        publish(DeliveryEventType.ACCEPTED, job);
+        return job;
+    }
+
+    public MessageJob getJob(String id) {
+        return jobs.getIfPresent(id);
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getQueueDepth(MessagePriority priority) {
+        return queue.size(priority);
+    }
+
+    public int getActiveJobs() {
+        return activeJobs.get();
+    }
+
+    public int getPendingRetries() {
+        return retryScheduler.getPendingRetries();
+    }
+
+    private void replay(Map<String, MessageParams> recoveredEntries) {
+        log.info("Replaying {} undelivered messages from the outbox journal", recoveredEntries.size());
+        try {
+            for (Map.Entry<String, MessageParams> entry : recoveredEntries.entrySet()) {
+                MessageJob job = new MessageJob(entry.getKey(), entry.getValue());
+                jobs.put(job.getId(), job);
+                queue.put(job);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void requeue(MessageJob job) {
+        job.markQueued();
+        if (!queue.offer(job))
+            retryScheduler.schedule(job, REQUEUE_DELAY_MILLIS, this::requeue);
+    }
+
+    private void drainQueue(Set<MessagePriority> priorities) {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                MessageJob job = queue.take(priorities);
+                activeJobs.incrementAndGet();
+                try {
+                    process(job);
+                } finally {
+                    activeJobs.decrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void process(MessageJob job) {
+        job.markSending();
+        try {
+            emailSender.sendMessage(job.getParams());
+            job.markSent();
+            laneTimers.get(job.getPriority()).record(Duration.between(job.getCreatedAt(), job.getUpdatedAt()));
+            outboxJournal.ack(job.getId());
+            publish(DeliveryEventType.SENT, job);
+        } catch (SendRateLimitedException e) {
+            eventBus.publish(DeliveryEventType.DEFERRED, job.getId(), job.getParams().getRecipient(),
+                    job.getFailedAttempts(), e.getMessage());
+            retryScheduler.schedule(job, e.getRetryAfterMillis(), this::requeue);
+        } catch (Exception e) {
+            handleFailure(job, e);
+        }
+    }
+
+    private void handleFailure(MessageJob job, Exception failure) {
+        log.warn("Sending message {} failed: {}", job.getId(), failure.getMessage());
+        if (!failureClassifier.isTransient(failure)) {
+            job.markFailed(failure.getMessage());
+            outboxJournal.ack(job.getId());
+            publish(DeliveryEventType.FAILED, job);
+        } else if (retryScheduler.canRetry(job.getFailedAttempts() + 1)) {
+            scheduleRetry(job, failure.getMessage());
+        } else {
+            // store first so a DEAD_LETTERED job can always be replayed
+            try {
+                moveToDeadLetters(job, failure.getMessage());
+            } catch (IOException e) {
+                // the message is still in the outbox journal, so it stays pending rather than being lost
+                log.error("Storing dead letter {} failed, retrying the message", job.getId(), e);
+                scheduleRetry(job, failure.getMessage());
+                return;
+            }
+            job.markDeadLettered(failure.getMessage());
+            publish(DeliveryEventType.FAILED, job);
+        }
+    }
+
+    private void scheduleRetry(MessageJob job, String error) {
+        job.markDeferred(error);
+        publish(DeliveryEventType.DEFERRED, job);
+        retryScheduler.schedule(job, retryScheduler.nextDelayMillis(job.getFailedAttempts()), this::requeue);
+    }
+
+    private void publish(DeliveryEventType type, MessageJob job) {
+        eventBus.publish(type, job.getId(), job.getParams().getRecipient(), job.getFailedAttempts(), job.getError());
+    }
+
+    private void moveToDeadLetters(MessageJob job, String error) throws IOException {
+        deadLetterStore.add(DeadLetter.builder()
+                .id(job.getId())
+                .params(job.getParams())
+                .attempts(job.getFailedAttempts() + 1)
+                .lastError(error)
+                .deadAt(Instant.now())
+                .build());
+    }
+}
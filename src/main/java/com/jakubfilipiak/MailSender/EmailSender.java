@@ -4,6 +4,7 @@ import org.springframework.mail.MailException;
 
 import javax.mail.MessagingException;
 import java.io.FileNotFoundException;
+import java.util.List;
 
 public interface EmailSender {
 
@@ -11,5 +12,12 @@ public interface EmailSender {
             IllegalArgumentException,
             MessagingException,
             FileNotFoundException,
-            MailException;
+            MailException,
+            SendRateLimitedException;
+
+    List<BatchItemResult> sendMessages(List<MessageParams> params, int firstIndex);
+
+    void validateMessage(MessageParams params) throws
+            IllegalArgumentException,
+            FileNotFoundException;
 }
@@ -1,8 +1,13 @@
 package com.jakubfilipiak.MailSender;
 
 import com.google.common.base.Preconditions;
-import org.springframework.core.io.FileSystemResource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
@@ -11,19 +16,62 @@ import javax.mail.MessagingException;
 import javax.mail.internet.MimeMessage;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 @Service
 public class EmailSenderImpl implements EmailSender {
 
-    private JavaMailSender mailSender;
+    private RelayRouter relayRouter;
     private EmailAddressValidator addressValidator;
+    private TemplateRegistry templateRegistry;
+    private AttachmentCache attachmentCache;
+    private SendRateLimiter rateLimiter;
+    private Timer validateTimer;
+    private Timer composeTimer;
+    private Timer attachmentsTimer;
+    private Timer transportTimer;
+    private AtomicInteger inFlightSends = new AtomicInteger();
 
     public EmailSenderImpl(
             JavaMailSender mailSender,
             EmailAddressValidator addressValidator) {
-        this.mailSender = mailSender;
+        this(RelayRouter.single(mailSender),
+                addressValidator,
+                new TemplateRegistry(10_000_000, 10),
+                new AttachmentCache(256 * 1024 * 1024, 16 * 1024 * 1024),
+                new SendRateLimiter(new RateLimitProperties()),
+                new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public EmailSenderImpl(
+            RelayRouter relayRouter,
+            EmailAddressValidator addressValidator,
+            TemplateRegistry templateRegistry,
+            AttachmentCache attachmentCache,
+            SendRateLimiter rateLimiter,
+            MeterRegistry meterRegistry) {
+        this.relayRouter = relayRouter;
         this.addressValidator = addressValidator;
+        this.templateRegistry = templateRegistry;
+        this.attachmentCache = attachmentCache;
+        this.rateLimiter = rateLimiter;
+        this.validateTimer = createStageTimer(meterRegistry, "validate");
+        this.composeTimer = createStageTimer(meterRegistry, "compose");
+        this.attachmentsTimer = createStageTimer(meterRegistry, "attachments");
+        this.transportTimer = createStageTimer(meterRegistry, "transport");
+        Gauge.builder("email.send.in-flight", inFlightSends, AtomicInteger::get)
+                .description("Messages currently being handed over to SMTP")
+                .register(meterRegistry);
     }
 
     @Override
@@ -31,53 +79,317 @@ public class EmailSenderImpl implements EmailSender {
             IllegalArgumentException,
             MessagingException,
             FileNotFoundException,
-            MailException {
-        mailSender.send(composeMessage(params));
+            MailException,
+            SendRateLimitedException {
+        MimeMessage message = composeMessage(params);
+        Semaphore permits = rateLimiter.acquire(params.getRecipient());
+        try {
+            send(params.getRecipient(), message);
+        } finally {
+            rateLimiter.release(permits);
+        }
     }
 
-    private MimeMessage composeMessage(MessageParams params) throws
+    // the same send path with its stage timers in a throwaway registry, for traffic kept out of the metrics
+    EmailSenderImpl withoutMetrics() {
+        return new EmailSenderImpl(
+                relayRouter,
+                addressValidator,
+                templateRegistry,
+                attachmentCache,
+                rateLimiter,
+                new SimpleMeterRegistry());
+    }
+
+    @Override
+    public List<BatchItemResult> sendMessages(List<MessageParams> paramsList, int firstIndex) {
+        List<BatchItemResult> results = new ArrayList<>(paramsList.size());
+        Map<String, Map<MimeMessage, BatchItemResult>> pendingResults = new LinkedHashMap<>();
+        Map<List<Object>, Integer> contentCounts = countContents(paramsList);
+        Map<List<Object>, SharedMimeBody> sharedBodies = new HashMap<>();
+        for (int i = 0; i < paramsList.size(); i++) {
+            MessageParams params = paramsList.get(i);
+            List<String> errors = collectErrors(params);
+            if (!errors.isEmpty()) {
+                results.add(BatchItemResult.invalid(firstIndex + i, params.getRecipient(), errors));
+                continue;
+            }
+            try {
+                MimeMessage message = composeBatchMessage(params, contentCounts, sharedBodies);
+                rateLimiter.acquireRate(params.getRecipient());
+                BatchItemResult result = BatchItemResult.sent(firstIndex + i, params.getRecipient());
+                pendingResults.computeIfAbsent(SendRateLimiter.toDomain(params.getRecipient()), key -> new LinkedHashMap<>())
+                        .put(message, result);
+                results.add(result);
+            } catch (MessagingException | FileNotFoundException | IllegalArgumentException e) {
+                results.add(BatchItemResult.failed(firstIndex + i, params.getRecipient(), e.getMessage()));
+            } catch (SendRateLimitedException e) {
+                results.add(BatchItemResult.throttled(firstIndex + i, params.getRecipient(), e.getMessage()));
+            }
+        }
+        pendingResults.values().forEach(this::sendPendingMessages);
+        return results;
+    }
+
+    @Override
+    public void validateMessage(MessageParams params) throws
+            IllegalArgumentException,
+            FileNotFoundException {
+        if (isEachRequiredParamPresent(params) && isMessageWithAttachments(params))
+            checkAttachments(params.getAttachments());
+    }
+
+    MimeMessage composeMessage(MessageParams params) throws
             IllegalArgumentException,
             MessagingException,
             FileNotFoundException {
-        MimeMessage message = mailSender.createMimeMessage();
-        if (isEachRequiredParamPresent(params)) {
-            boolean isMessageWithAttachments = isMessageWithAttachments(params);
-            MimeMessageHelper helper = new MimeMessageHelper(message, isMessageWithAttachments);
+        MimeMessage message = relayRouter.createMimeMessage();
+        long started = System.nanoTime();
+        try {
+            isEachRequiredParamPresent(params);
+        } finally {
+            record(validateTimer, started);
+        }
+        started = System.nanoTime();
+        boolean isMessageWithAttachments = isMessageWithAttachments(params);
+        MimeMessageHelper helper;
+        try {
+            helper = new MimeMessageHelper(message, isMessageWithAttachments);
             helper.setTo(params.getRecipient());
             helper.setSubject(params.getSubject());
-            helper.setText(params.getTextContent(), params.getIsHtml());
-            if (isMessageWithAttachments)
+            helper.setText(resolveTextContent(params), params.getIsHtml());
+        } finally {
+            record(composeTimer, started);
+        }
+        if (isMessageWithAttachments) {
+            started = System.nanoTime();
+            try {
                 addAttachments(helper, params.getAttachments());
+            } finally {
+                record(attachmentsTimer, started);
+            }
         }
         return message;
     }
 
+    // recipients sharing subject, content and attachments reuse one rendered body and only get their own headers
+    private MimeMessage composeBatchMessage(
+            MessageParams params,
+            Map<List<Object>, Integer> contentCounts,
+            Map<List<Object>, SharedMimeBody> sharedBodies) throws
+            IllegalArgumentException,
+            MessagingException,
+            FileNotFoundException {
+        List<Object> contentKey = getContentKey(params);
+        if (contentCounts.getOrDefault(contentKey, 0) < 2)
+            return composeMessage(params);
+        SharedMimeBody body = sharedBodies.get(contentKey);
+        if (body == null) {
+            body = SharedMimeBody.render(composeMessage(params));
+            sharedBodies.put(contentKey, body);
+        }
+        long started = System.nanoTime();
+        try {
+            return new FanOutMimeMessage(body, params.getRecipient());
+        } finally {
+            record(composeTimer, started);
+        }
+    }
+
+    private Map<List<Object>, Integer> countContents(List<MessageParams> paramsList) {
+        Map<List<Object>, Integer> contentCounts = new HashMap<>();
+        for (MessageParams params : paramsList)
+            if (!hasStreamedAttachments(params))
+                contentCounts.merge(getContentKey(params), 1, Integer::sum);
+        return contentCounts;
+    }
+
+    private List<Object> getContentKey(MessageParams params) {
+        return Arrays.asList(
+                params.getSubject(),
+                params.getTextContent(),
+                params.getIsHtml(),
+                params.getAttachments(),
+                params.getTemplateId(),
+                params.getTemplateVersion(),
+                params.getVariables());
+    }
+
+    // a rendered body is held in memory, so attachments streamed from disk are never shared
+    private boolean hasStreamedAttachments(MessageParams params) {
+        if (!isMessageWithAttachments(params))
+            return false;
+        for (String path : params.getAttachments().keySet())
+            if (attachmentCache.isStreamed(path))
+                return true;
+        return false;
+    }
+
+    private void send(String recipient, MimeMessage message) throws MailException, SendRateLimitedException {
+        Relay relay = relayRouter.route(recipient);
+        try {
+            send(relay, message);
+        } catch (MailException e) {
+            Relay fallback = relayRouter.routeFallback(recipient, relay, e);
+            if (fallback == null)
+                throw e;
+            send(fallback, message);
+        }
+    }
+
+    private void send(Relay relay, MimeMessage... messages) throws MailException {
+        inFlightSends.addAndGet(messages.length);
+        long started = System.nanoTime();
+        try {
+            relayRouter.send(relay, messages);
+        } finally {
+            record(transportTimer, started);
+            inFlightSends.addAndGet(-messages.length);
+        }
+    }
+
+    private Timer createStageTimer(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder("email.send.stage")
+                .description("Time spent in each stage of the send pipeline")
+                .tag("stage", stage)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private void record(Timer timer, long startedNanos) {
+        timer.record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // messages to one domain go out one after another, so the domain's group holds a single concurrency permit
+    private void sendPendingMessages(Map<MimeMessage, BatchItemResult> pendingResults) {
+        String recipient = pendingResults.values().iterator().next().getRecipient();
+        Semaphore permits;
+        try {
+            permits = rateLimiter.acquireConcurrency(recipient);
+        } catch (SendRateLimitedException e) {
+            pendingResults.values().forEach(result -> throttle(result, e));
+            return;
+        }
+        try {
+            Map<Relay, Map<MimeMessage, BatchItemResult>> relayResults = new LinkedHashMap<>();
+            for (Map.Entry<MimeMessage, BatchItemResult> entry : pendingResults.entrySet()) {
+                try {
+                    Relay relay = relayRouter.route(entry.getValue().getRecipient());
+                    relayResults.computeIfAbsent(relay, key -> new LinkedHashMap<>()).put(entry.getKey(), entry.getValue());
+                } catch (SendRateLimitedException e) {
+                    throttle(entry.getValue(), e);
+                }
+            }
+            relayResults.forEach(this::sendRelayMessages);
+        } finally {
+            rateLimiter.release(permits);
+        }
+    }
+
+    private void throttle(BatchItemResult result, SendRateLimitedException e) {
+        rateLimiter.refundRate(result.getRecipient());
+        result.throttle(e.getMessage());
+    }
+
+    // like a single send, each failed message gets one more go on another relay when its relay is to blame
+    private void sendRelayMessages(Relay relay, Map<MimeMessage, BatchItemResult> pendingResults) {
+        Map<Relay, Map<MimeMessage, BatchItemResult>> fallbackResults = new LinkedHashMap<>();
+        sendRelayMessages(relay, pendingResults, (message, failure) -> {
+            BatchItemResult result = pendingResults.get(message);
+            Relay fallback = relayRouter.routeFallback(result.getRecipient(), relay, failure);
+            if (fallback == null)
+                result.fail(failure.getMessage());
+            else
+                fallbackResults.computeIfAbsent(fallback, key -> new LinkedHashMap<>()).put(message, result);
+        });
+        fallbackResults.forEach((fallback, results) -> sendRelayMessages(fallback, results,
+                (message, failure) -> results.get(message).fail(failure.getMessage())));
+    }
+
+    private void sendRelayMessages(
+            Relay relay,
+            Map<MimeMessage, BatchItemResult> pendingResults,
+            BiConsumer<MimeMessage, Exception> onFailure) {
+        try {
+            send(relay, pendingResults.keySet().toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            if (e.getFailedMessages().isEmpty())
+                pendingResults.keySet().forEach(message -> onFailure.accept(message, e));
+            e.getFailedMessages().forEach((message, cause) -> onFailure.accept((MimeMessage) message, cause));
+        } catch (MailException e) {
+            pendingResults.keySet().forEach(message -> onFailure.accept(message, e));
+        }
+    }
+
+    private List<String> collectErrors(MessageParams params) {
+        List<String> errors = new ArrayList<>();
+        if (params.getRecipient() == null || !addressValidator.isCorrect(params.getRecipient()))
+            errors.add("Wrong recipient!");
+        if (params.getSubject() == null || params.getSubject().isEmpty())
+            errors.add("Wrong subject!");
+        if (params.getTextContent() == null && params.getTemplateId() == null)
+            errors.add("Wrong textContent!");
+        if (params.getIsHtml() == null)
+            errors.add("Wrong isHtml!");
+        if (isMessageWithAttachments(params)) {
+            try {
+                checkAttachments(params.getAttachments());
+            } catch (FileNotFoundException e) {
+                errors.add("Attachment not found!");
+            } catch (IllegalArgumentException e) {
+                errors.add("Wrong attachment name!");
+            }
+        }
+        return errors;
+    }
+
     private boolean isEachRequiredParamPresent(MessageParams params) throws IllegalArgumentException {
         Preconditions.checkArgument(params.getRecipient() != null
                 && addressValidator.isCorrect(params.getRecipient()),  "Wrong recipient!");
         Preconditions.checkArgument(params.getSubject() != null
                 && !params.getSubject().isEmpty(), "Wrong subject!");
-        Preconditions.checkArgument(params.getTextContent() != null,  "Wrong textContent!");
+        Preconditions.checkArgument(params.getTextContent() != null
+                || params.getTemplateId() != null,  "Wrong textContent!");
         Preconditions.checkArgument(params.getIsHtml() != null,  "Wrong isHtml!");
         return true;
     }
 
+    private String resolveTextContent(MessageParams params) throws IllegalArgumentException {
+        if (params.getTemplateId() == null)
+            return params.getTextContent();
+        return templateRegistry.render(
+                params.getTemplateId(),
+                params.getTemplateVersion(),
+                params.getVariables(),
+                params.getIsHtml());
+    }
+
     private boolean isMessageWithAttachments(MessageParams params) {
         return params.getAttachments() != null && !params.getAttachments().isEmpty();
     }
 
+    private void checkAttachments(Map<String, String> attachments) throws
+            FileNotFoundException,
+            IllegalArgumentException {
+        for (String path : attachments.keySet()) {
+            String name = attachments.get(path);
+            if (new File(path).exists()) {
+                if (name == null || name.isEmpty())
+                    throw new IllegalArgumentException();
+            } else throw new FileNotFoundException();
+        }
+    }
+
     private void addAttachments(MimeMessageHelper helper, Map<String, String> attachments) throws
             MessagingException,
             FileNotFoundException,
             IllegalArgumentException {
         for (String path : attachments.keySet()) {
-            File file = new File(path);
             String name = attachments.get(path);
-            if (file.exists()) {
-                if (name != null && !name.isEmpty())
-                    helper.addAttachment(attachments.get(path), new FileSystemResource(path));
-                else throw new IllegalArgumentException();
-            } else throw new FileNotFoundException();
+            if (name == null || name.isEmpty())
+                throw new IllegalArgumentException();
+            helper.getRootMimeMultipart().addBodyPart(attachmentCache.createBodyPart(path, name));
         }
     }
 }
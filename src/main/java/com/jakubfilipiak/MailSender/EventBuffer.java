@@ -0,0 +1,66 @@
+package com.jakubfilipiak.MailSender;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// bounded per-subscriber buffer: newer events of a message replace older ones, the oldest are dropped when full
+public class EventBuffer {
+
+    private Map<String, DeliveryEvent> events = new LinkedHashMap<>();
+    private int capacity;
+    private long droppedEvents;
+
+    public EventBuffer(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public synchronized void offer(DeliveryEvent event) {
+        // removing first moves a coalesced message to the end, keeping the buffer in event order
+        events.remove(event.getCoalescingKey());
+        if (events.size() >= capacity) {
+            Iterator<DeliveryEvent> oldest = events.values().iterator();
+            oldest.next();
+            oldest.remove();
+            droppedEvents++;
+        }
+        events.put(event.getCoalescingKey(), event);
+    }
+
+    public synchronized List<DeliveryEvent> drain(int maxEvents) {
+        List<DeliveryEvent> drained = new ArrayList<>(Math.min(maxEvents, events.size()));
+        Iterator<DeliveryEvent> iterator = events.values().iterator();
+        while (iterator.hasNext() && drained.size() < maxEvents) {
+            drained.add(iterator.next());
+            iterator.remove();
+        }
+        return drained;
+    }
+
+    // puts back a batch that could not be delivered, unless newer events of the same messages arrived meanwhile
+    public synchronized void restore(List<DeliveryEvent> batch) {
+        Map<String, DeliveryEvent> restored = new LinkedHashMap<>();
+        for (DeliveryEvent event : batch)
+            restored.put(event.getCoalescingKey(), event);
+        for (Map.Entry<String, DeliveryEvent> entry : events.entrySet())
+            restored.put(entry.getKey(), entry.getValue());
+        int overflow = restored.size() - capacity;
+        Iterator<DeliveryEvent> oldest = restored.values().iterator();
+        for (int i = 0; i < overflow; i++) {
+            oldest.next();
+            oldest.remove();
+            droppedEvents++;
+        }
+        events = restored;
+    }
+
+    public synchronized int size() {
+        return events.size();
+    }
+
+    public synchronized long getDroppedEvents() {
+        return droppedEvents;
+    }
+}
@@ -0,0 +1,96 @@
+package com.jakubfilipiak.MailSender;
+
+import com.sun.mail.smtp.SMTPAddressFailedException;
+import com.sun.mail.smtp.SMTPSendFailedException;
+import com.sun.mail.smtp.SMTPSenderFailedException;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.stereotype.Component;
+
+import javax.mail.MessagingException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+@Component
+public class FailureClassifier {
+
+    public boolean isTransient(Exception failure) {
+        if (failure instanceof SendRateLimitedException)
+            return true;
+        if (failure instanceof MailAuthenticationException
+                || failure instanceof IllegalArgumentException
+                || failure instanceof FileNotFoundException)
+            return false;
+        if (failure instanceof MailSendException) {
+            MailSendException sendException = (MailSendException) failure;
+            for (Exception cause : sendException.getFailedMessages().values())
+                if (!isTransientCause(cause))
+                    return false;
+            return sendException.getFailedMessages().isEmpty() ? isTransientCause(failure) : true;
+        }
+        return isTransientCause(failure);
+    }
+
+    // failures that point at the relay itself rather than at one message, recipient or the local pool
+    public boolean isRelayFailure(Exception failure) {
+        return failure instanceof MailAuthenticationException
+                || (isTransient(failure) && !isPoolUnavailable(failure));
+    }
+
+    // no connection could be borrowed, so the relay neither failed nor succeeded
+    public boolean isPoolUnavailable(Exception failure) {
+        if (failure instanceof MailSendException)
+            for (Exception cause : ((MailSendException) failure).getFailedMessages().values())
+                if (findPoolUnavailable(cause))
+                    return true;
+        return findPoolUnavailable(failure);
+    }
+
+    private boolean findPoolUnavailable(Throwable failure) {
+        Set<Throwable> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Throwable current = failure;
+        while (current != null && visited.add(current)) {
+            if (current instanceof SmtpPoolUnavailableException)
+                return true;
+            current = getNextCause(current);
+        }
+        return false;
+    }
+
+    private boolean isTransientCause(Throwable failure) {
+        Set<Throwable> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        boolean ioFailure = false;
+        Throwable current = failure;
+        while (current != null && visited.add(current)) {
+            // pool exhaustion clears up as soon as other sends hand their connections back
+            if (current instanceof SmtpPoolUnavailableException)
+                return true;
+            int returnCode = getReturnCode(current);
+            if (returnCode > 0)
+                return returnCode / 100 == 4;
+            ioFailure |= current instanceof IOException;
+            current = getNextCause(current);
+        }
+        // connection resets and timeouts surface as IOExceptions without an SMTP reply
+        return ioFailure;
+    }
+
+    private Throwable getNextCause(Throwable failure) {
+        return failure instanceof MessagingException && ((MessagingException) failure).getNextException() != null
+                ? ((MessagingException) failure).getNextException()
+                : failure.getCause();
+    }
+
+    private int getReturnCode(Throwable failure) {
+        if (failure instanceof SMTPSendFailedException)
+            return ((SMTPSendFailedException) failure).getReturnCode();
+        if (failure instanceof SMTPAddressFailedException)
+            return ((SMTPAddressFailedException) failure).getReturnCode();
+        if (failure instanceof SMTPSenderFailedException)
+            return ((SMTPSenderFailedException) failure).getReturnCode();
+        return -1;
+    }
+}
@@ -0,0 +1,43 @@
+package com.jakubfilipiak.MailSender;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+
+// one recipient's copy of a SharedMimeBody, only the headers are its own
+public class FanOutMimeMessage extends MimeMessage {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private SharedMimeBody body;
+
+    public FanOutMimeMessage(SharedMimeBody body, String recipient) throws MessagingException {
+        super(body.getSession(), body.newStream());
+        this.body = body;
+        setRecipient(RecipientType.TO, new InternetAddress(recipient, true));
+    }
+
+    @Override
+    protected void updateHeaders() throws MessagingException {
+        // content headers were fixed when the body was rendered
+        updateMessageID();
+    }
+
+    @Override
+    public void writeTo(OutputStream os, String[] ignoreList) throws IOException, MessagingException {
+        if (!saved)
+            saveChanges();
+        Enumeration<?> headerLines = getNonMatchingHeaderLines(ignoreList);
+        while (headerLines.hasMoreElements()) {
+            os.write(((String) headerLines.nextElement()).getBytes(StandardCharsets.UTF_8));
+            os.write(CRLF);
+        }
+        os.write(CRLF);
+        body.writeContentTo(os);
+        os.flush();
+    }
+}
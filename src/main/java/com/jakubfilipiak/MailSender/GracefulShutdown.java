@@ -0,0 +1,81 @@
+package com.jakubfilipiak.MailSender;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+// stopped before the other beans are destroyed and while the web server still answers, so in-flight sends can finish
+@Component
+public class GracefulShutdown implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(GracefulShutdown.class);
+    private static final long POLL_MILLIS = 100;
+
+    private ServiceState serviceState;
+    private EmailDispatcher emailDispatcher;
+    private MergeJobService mergeJobService;
+    private long drainTimeoutMillis;
+    private volatile boolean running;
+
+    public GracefulShutdown(
+            ServiceState serviceState,
+            EmailDispatcher emailDispatcher,
+            MergeJobService mergeJobService,
+            @Value("${email.shutdown.drain-timeout-ms:30000}") long drainTimeoutMillis) {
+        this.serviceState = serviceState;
+        this.emailDispatcher = emailDispatcher;
+        this.mergeJobService = mergeJobService;
+        this.drainTimeoutMillis = drainTimeoutMillis;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        serviceState.setStatus(ServiceStatus.DRAINING);
+        try {
+            // interrupted jobs checkpoint and resume on the next start instead of feeding the queue being drained
+            mergeJobService.stop();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMillis);
+            while (!isDrained() && System.nanoTime() < deadline)
+                Thread.sleep(POLL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (isDrained())
+            log.info("Drained in-flight and queued messages, {} retries stay in the outbox journal",
+                    emailDispatcher.getPendingRetries());
+        else
+            log.warn("Drain timed out with {} requests, {} queued and {} sending messages left, "
+                            + "{} retries stay in the outbox journal",
+                    serviceState.getActiveRequests(),
+                    emailDispatcher.getQueueDepth(),
+                    emailDispatcher.getActiveJobs(),
+                    emailDispatcher.getPendingRetries());
+        serviceState.setStatus(ServiceStatus.STOPPED);
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE;
+    }
+
+    private boolean isDrained() {
+        return serviceState.getActiveRequests() == 0
+                && emailDispatcher.getQueueDepth() == 0
+                && emailDispatcher.getActiveJobs() == 0;
+    }
+}
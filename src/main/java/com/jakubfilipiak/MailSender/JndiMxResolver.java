@@ -0,0 +1,77 @@
+package com.jakubfilipiak.MailSender;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.naming.Context;
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.InitialDirContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+
+@Component
+public class JndiMxResolver implements MxResolver {
+
+    private static final String[] RECORD_TYPES = {"MX", "A", "AAAA"};
+
+    private Hashtable<String, String> environment = new Hashtable<>();
+
+    public JndiMxResolver(
+            @Value("${email.validation.mx-check.dns-servers:}") String dnsServers,
+            @Value("${email.validation.mx-check.timeout-ms:2000}") int timeoutMillis) {
+        environment.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.dns.DnsContextFactory");
+        if (!dnsServers.isEmpty())
+            environment.put(Context.PROVIDER_URL, toProviderUrl(dnsServers));
+        environment.put("com.sun.jndi.dns.timeout.initial", String.valueOf(timeoutMillis));
+        environment.put("com.sun.jndi.dns.timeout.retries", "1");
+    }
+
+    @Override
+    public List<String> resolveMailExchangers(String domain) throws NamingException {
+        DirContext context = new InitialDirContext(environment);
+        try {
+            Attributes attributes = context.getAttributes(domain, RECORD_TYPES);
+            Attribute mx = attributes.get("MX");
+            if (mx != null)
+                return toHosts(mx);
+            // RFC 5321 5.1: without MX records the domain itself is the implicit exchanger
+            if (attributes.get("A") != null || attributes.get("AAAA") != null)
+                return Collections.singletonList(domain);
+            return Collections.emptyList();
+        } catch (NameNotFoundException e) {
+            return Collections.emptyList();
+        } finally {
+            context.close();
+        }
+    }
+
+    private List<String> toHosts(Attribute mx) throws NamingException {
+        List<String> hosts = new ArrayList<>();
+        NamingEnumeration<?> records = mx.getAll();
+        while (records.hasMore()) {
+            // "<preference> <host>", where a single "." host is the RFC 7505 null MX
+            String record = String.valueOf(records.next());
+            String host = record.substring(record.indexOf(' ') + 1);
+            if (!host.equals("."))
+                hosts.add(host);
+        }
+        return hosts;
+    }
+
+    private String toProviderUrl(String dnsServers) {
+        StringBuilder url = new StringBuilder();
+        for (String server : dnsServers.split(",")) {
+            if (url.length() > 0)
+                url.append(' ');
+            url.append("dns://").append(server.trim());
+        }
+        return url.toString();
+    }
+}
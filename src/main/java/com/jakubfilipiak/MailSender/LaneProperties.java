@@ -0,0 +1,46 @@
+package com.jakubfilipiak.MailSender;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties("email.lanes")
+public class LaneProperties {
+
+    private Lane transactional = new Lane(8, 1000, 1, 1000);
+    private Lane normal = new Lane(3, 1000, 0, 10000);
+    private Lane bulk = new Lane(1, 1000, 0, 60000);
+
+    public Lane getLane(MessagePriority priority) {
+        switch (priority) {
+            case TRANSACTIONAL:
+                return transactional;
+            case BULK:
+                return bulk;
+            default:
+                return normal;
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class Lane {
+
+        private int weight;
+        private int capacity;
+        private int reservedWorkers; // dispatcher threads that only serve this lane
+        private long sloMs;
+
+        public Lane() {
+        }
+
+        Lane(int weight, int capacity, int reservedWorkers, long sloMs) {
+            this.weight = weight;
+            this.capacity = capacity;
+            this.reservedWorkers = reservedWorkers;
+            this.sloMs = sloMs;
+        }
+    }
+}
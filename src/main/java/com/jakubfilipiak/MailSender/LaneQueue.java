@@ -0,0 +1,133 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class LaneQueue {
+
+    private Map<MessagePriority, Lane> lanes = new EnumMap<>(MessagePriority.class);
+    private ReentrantLock lock = new ReentrantLock();
+    private Condition notEmpty = lock.newCondition();
+    private Condition notFull = lock.newCondition();
+
+    public LaneQueue(LaneProperties laneProperties) throws IllegalArgumentException {
+        for (MessagePriority priority : MessagePriority.values()) {
+            LaneProperties.Lane lane = laneProperties.getLane(priority);
+            Preconditions.checkArgument(lane.getWeight() > 0 && lane.getCapacity() > 0,
+                    "Wrong email.lanes." + priority.name().toLowerCase() + " settings!");
+            lanes.put(priority, new Lane(lane.getWeight(), lane.getCapacity()));
+        }
+    }
+
+    public boolean offer(MessageJob job) {
+        lock.lock();
+        try {
+            Lane lane = lanes.get(job.getPriority());
+            if (lane.jobs.size() >= lane.capacity)
+                return false;
+            add(lane, job);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(MessageJob job) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            Lane lane = lanes.get(job.getPriority());
+            while (lane.jobs.size() >= lane.capacity)
+                notFull.await();
+            add(lane, job);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // blocks until one of the given lanes has a job, busier lanes are picked by smooth weighted round robin
+    public MessageJob take(Set<MessagePriority> priorities) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            Lane lane;
+            while ((lane = selectLane(priorities)) == null)
+                notEmpty.await();
+            notFull.signalAll();
+            return lane.jobs.poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int remainingCapacity(MessagePriority priority) {
+        lock.lock();
+        try {
+            Lane lane = lanes.get(priority);
+            return lane.capacity - lane.jobs.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size(MessagePriority priority) {
+        lock.lock();
+        try {
+            return lanes.get(priority).jobs.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            int size = 0;
+            for (Lane lane : lanes.values())
+                size += lane.jobs.size();
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void add(Lane lane, MessageJob job) {
+        lane.jobs.add(job);
+        // workers wait for different lanes, so one signal could wake a worker that can't take the job
+        notEmpty.signalAll();
+    }
+
+    private Lane selectLane(Set<MessagePriority> priorities) {
+        Lane best = null;
+        int totalWeight = 0;
+        for (MessagePriority priority : priorities) {
+            Lane lane = lanes.get(priority);
+            if (lane.jobs.isEmpty())
+                continue;
+            lane.currentWeight += lane.weight;
+            totalWeight += lane.weight;
+            if (best == null || lane.currentWeight > best.currentWeight)
+                best = lane;
+        }
+        if (best != null)
+            best.currentWeight -= totalWeight;
+        return best;
+    }
+
+    private static class Lane {
+
+        private final ArrayDeque<MessageJob> jobs = new ArrayDeque<>();
+        private final int weight;
+        private final int capacity;
+        private int currentWeight;
+
+        private Lane(int weight, int capacity) {
+            this.weight = weight;
+            this.capacity = capacity;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.jakubfilipiak.MailSender;
+
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+
+// warming up and draining are still alive, restarting the instance would only lose that work
+@Component
+@WebEndpoint(id = "liveness")
+public class LivenessEndpoint {
+
+    private ServiceState serviceState;
+
+    public LivenessEndpoint(ServiceState serviceState) {
+        this.serviceState = serviceState;
+    }
+
+    @ReadOperation
+    public WebEndpointResponse<Map<String, ServiceStatus>> liveness() {
+        ServiceStatus status = serviceState.getStatus();
+        return new WebEndpointResponse<>(
+                Collections.singletonMap("status", status), status == ServiceStatus.STOPPED ? 503 : 200);
+    }
+}
@@ -0,0 +1,128 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.base.Preconditions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+@Configuration
+@EnableConfigurationProperties({MailProperties.class, RelayProperties.class})
+public class MailSenderConfiguration {
+
+    @Bean
+    public RelayRouter relayRouter(
+            MailProperties mailProperties,
+            RelayProperties relayProperties,
+            ProtocolTraceSampler traceSampler,
+            FailureClassifier failureClassifier,
+            @Value("${email.pool.max-size:4}") int maxSize,
+            @Value("${email.pool.max-messages-per-connection:100}") int maxMessagesPerConnection,
+            @Value("${email.pool.idle-timeout-ms:30000}") long idleTimeoutMillis,
+            @Value("${email.pool.borrow-timeout-ms:10000}") long borrowTimeoutMillis,
+            @Value("${email.dispatcher.threads:4}") int dispatcherThreads) throws IllegalArgumentException {
+        if (relayProperties.getServers().isEmpty()) {
+            checkPoolSize("default", maxSize, 1, 1, dispatcherThreads);
+            PooledJavaMailSender mailSender = new PooledJavaMailSender(
+                    maxSize,
+                    maxMessagesPerConnection,
+                    idleTimeoutMillis,
+                    borrowTimeoutMillis);
+            applyProperties(mailProperties, mailSender);
+            mailSender.setTraceSampler(traceSampler);
+            Relay relay = new Relay("default", mailSender, 1, createCircuitBreaker(relayProperties, 1));
+            return new RelayRouter(
+                    Collections.singletonList(relay),
+                    relayProperties.getStrategy(),
+                    Collections.emptyMap(),
+                    failureClassifier,
+                    mailSender);
+        }
+        List<Relay> relays = new ArrayList<>();
+        int totalWeight = 0;
+        for (RelayProperties.Server server : relayProperties.getServers())
+            totalWeight += Math.max(server.getWeight(), 1);
+        for (RelayProperties.Server server : relayProperties.getServers()) {
+            checkPoolSize(server.getName(), server.getMaxConnections(),
+                    Math.max(server.getWeight(), 1), totalWeight, dispatcherThreads);
+            PooledJavaMailSender mailSender = new PooledJavaMailSender(
+                    server.getMaxConnections(),
+                    server.getMaxMessagesPerConnection(),
+                    idleTimeoutMillis,
+                    borrowTimeoutMillis);
+            applyProperties(mailProperties, mailSender);
+            applyProperties(server, mailSender);
+            mailSender.setTraceSampler(traceSampler);
+            relays.add(new Relay(server.getName(), mailSender, server.getWeight(),
+                    createCircuitBreaker(relayProperties, relayProperties.getServers().size())));
+        }
+        // composes messages from the shared spring.mail settings only, the relay-specific ones apply when sending
+        JavaMailSenderImpl messageFactory = new JavaMailSenderImpl();
+        applyProperties(mailProperties, messageFactory);
+        return new RelayRouter(
+                relays,
+                relayProperties.getStrategy(),
+                relayProperties.getDomains(),
+                failureClassifier,
+                messageFactory);
+    }
+
+    // each dispatcher worker holds one connection at a time and relays take workers in proportion to their
+    // weight, so with pools this large the workers reserved for a lane never wait for connections held by
+    // shared workers; synchronous requests still share the pools
+    private void checkPoolSize(String relay, int maxConnections, int weight, int totalWeight, int dispatcherThreads)
+            throws IllegalArgumentException {
+        int share = (int) Math.ceil((double) dispatcherThreads * weight / totalWeight);
+        Preconditions.checkArgument(maxConnections >= share,
+                "SMTP pool of relay " + relay + " is smaller than its share of email.dispatcher.threads!");
+    }
+
+    // an open breaker on the only relay just turns every send into a 429 until it closes again
+    private CircuitBreaker createCircuitBreaker(RelayProperties relayProperties, int relayCount) {
+        RelayProperties.Breaker breaker = relayProperties.getCircuitBreaker();
+        if (breaker.getEnabled() != null ? !breaker.getEnabled() : relayCount < 2)
+            return CircuitBreaker.disabled();
+        return new CircuitBreaker(
+                breaker.getFailureThreshold(),
+                breaker.getOpenMs(),
+                breaker.getHalfOpenMaxCalls(),
+                breaker.getSuccessThreshold());
+    }
+
+    private void applyProperties(MailProperties mailProperties, JavaMailSenderImpl mailSender) {
+        mailSender.setHost(mailProperties.getHost());
+        if (mailProperties.getPort() != null)
+            mailSender.setPort(mailProperties.getPort());
+        mailSender.setUsername(mailProperties.getUsername());
+        mailSender.setPassword(mailProperties.getPassword());
+        mailSender.setProtocol(mailProperties.getProtocol());
+        if (mailProperties.getDefaultEncoding() != null)
+            mailSender.setDefaultEncoding(mailProperties.getDefaultEncoding().name());
+        if (!mailProperties.getProperties().isEmpty()) {
+            Properties javaMailProperties = new Properties();
+            javaMailProperties.putAll(mailProperties.getProperties());
+            mailSender.setJavaMailProperties(javaMailProperties);
+        }
+    }
+
+    private void applyProperties(RelayProperties.Server server, PooledJavaMailSender mailSender) {
+        mailSender.setHost(server.getHost());
+        mailSender.setPort(server.getPort() != null ? server.getPort() : PooledJavaMailSender.DEFAULT_PORT);
+        mailSender.setUsername(server.getUsername());
+        mailSender.setPassword(server.getPassword());
+        mailSender.setProtocol(server.getProtocol());
+        if (!server.getProperties().isEmpty()) {
+            Properties javaMailProperties = new Properties();
+            javaMailProperties.putAll(mailSender.getJavaMailProperties());
+            javaMailProperties.putAll(server.getProperties());
+            mailSender.setJavaMailProperties(javaMailProperties);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.jakubfilipiak.MailSender;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+
+@Component
+@Endpoint(id = "mailtrace")
+public class MailTraceEndpoint {
+
+    private ProtocolTraceSampler traceSampler;
+
+    public MailTraceEndpoint(ProtocolTraceSampler traceSampler) {
+        this.traceSampler = traceSampler;
+    }
+
+    @ReadOperation
+    public Map<String, Double> sampleRate() {
+        return Collections.singletonMap("sampleRate", traceSampler.getSampleRate());
+    }
+
+    @WriteOperation
+    public Map<String, Double> setSampleRate(double sampleRate) {
+        traceSampler.setSampleRate(sampleRate);
+        return sampleRate();
+    }
+}
@@ -0,0 +1,30 @@
+package com.jakubfilipiak.MailSender;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Instant;
+
+@Getter
+@Builder
+@JsonDeserialize(builder = MergeCheckpoint.MergeCheckpointBuilder.class)
+public class MergeCheckpoint {
+
+    private final String id;
+    private final MergeJobRequest request;
+    private final String sourcePath;
+    private final boolean uploaded;
+    private final Instant createdAt;
+    private final long totalBytes;
+    private final MergeJobStatus status;
+    private final long rowOffset;
+    private final long submittedRows;
+    private final long invalidRows;
+    private final String error;
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static class MergeCheckpointBuilder {
+    }
+}
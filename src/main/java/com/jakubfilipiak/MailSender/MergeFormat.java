@@ -0,0 +1,6 @@
+package com.jakubfilipiak.MailSender;
+
+public enum MergeFormat {
+    CSV,
+    NDJSON
+}
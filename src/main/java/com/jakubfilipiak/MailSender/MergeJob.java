@@ -0,0 +1,114 @@
+package com.jakubfilipiak.MailSender;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+
+@Getter
+public class MergeJob {
+
+    private final String id;
+    @JsonIgnore
+    private final MergeJobRequest request;
+    @JsonIgnore
+    private final Path sourcePath;
+    @JsonIgnore
+    private final boolean uploaded;
+    private final Instant createdAt;
+    private final long totalBytes;
+    private volatile long bytesRead;
+    private volatile Instant updatedAt;
+    private volatile MergeJobStatus status;
+    private volatile long rowOffset;
+    private volatile long submittedRows;
+    private volatile long invalidRows;
+    private volatile String error;
+    @JsonIgnore
+    private volatile boolean pauseRequested;
+
+    MergeJob(String id, MergeJobRequest request, Path sourcePath, boolean uploaded, long totalBytes) {
+        this.id = id;
+        this.request = request;
+        this.sourcePath = sourcePath;
+        this.uploaded = uploaded;
+        this.totalBytes = totalBytes;
+        this.createdAt = Instant.now();
+        this.updatedAt = createdAt;
+        this.status = MergeJobStatus.RUNNING;
+    }
+
+    MergeJob(MergeCheckpoint checkpoint) {
+        this.id = checkpoint.getId();
+        this.request = checkpoint.getRequest();
+        this.sourcePath = Paths.get(checkpoint.getSourcePath());
+        this.uploaded = checkpoint.isUploaded();
+        this.createdAt = checkpoint.getCreatedAt();
+        this.totalBytes = checkpoint.getTotalBytes();
+        this.updatedAt = Instant.now();
+        this.status = checkpoint.getStatus();
+        this.rowOffset = checkpoint.getRowOffset();
+        this.submittedRows = checkpoint.getSubmittedRows();
+        this.invalidRows = checkpoint.getInvalidRows();
+        this.error = checkpoint.getError();
+    }
+
+    MergeCheckpoint toCheckpoint() {
+        return MergeCheckpoint.builder()
+                .id(id)
+                .request(request)
+                .sourcePath(sourcePath.toString())
+                .uploaded(uploaded)
+                .createdAt(createdAt)
+                .totalBytes(totalBytes)
+                .status(status)
+                .rowOffset(rowOffset)
+                .submittedRows(submittedRows)
+                .invalidRows(invalidRows)
+                .error(error)
+                .build();
+    }
+
+    void readUpTo(long bytesRead) {
+        this.bytesRead = bytesRead;
+    }
+
+    void rowSubmitted() {
+        submittedRows++;
+        rowOffset++;
+    }
+
+    void rowInvalid() {
+        invalidRows++;
+        rowOffset++;
+    }
+
+    void requestPause() {
+        pauseRequested = true;
+    }
+
+    void markRunning() {
+        pauseRequested = false;
+        changeStatus(MergeJobStatus.RUNNING, null);
+    }
+
+    void markPaused() {
+        changeStatus(MergeJobStatus.PAUSED, null);
+    }
+
+    void markCompleted() {
+        changeStatus(MergeJobStatus.COMPLETED, null);
+    }
+
+    void markFailed(String error) {
+        changeStatus(MergeJobStatus.FAILED, error);
+    }
+
+    private void changeStatus(MergeJobStatus status, String error) {
+        this.error = error;
+        this.updatedAt = Instant.now();
+        this.status = status;
+    }
+}
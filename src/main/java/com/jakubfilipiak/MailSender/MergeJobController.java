@@ -0,0 +1,86 @@
+package com.jakubfilipiak.MailSender;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestPart;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+@RestController
+public class MergeJobController {
+
+    private MergeJobService mergeJobService;
+
+    public MergeJobController(MergeJobService mergeJobService) {
+        this.mergeJobService = mergeJobService;
+    }
+
+    @PostMapping("/merge-jobs")
+    public ResponseEntity createJob(@RequestBody MergeJobRequest request) {
+        try {
+            return toCreatedResponse(mergeJobService.create(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(412).body(e.getMessage());
+        } catch (FileNotFoundException e) {
+            return ResponseEntity.status(410).body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/merge-jobs/upload")
+    public ResponseEntity uploadJob(
+            @RequestPart("job") MergeJobRequest request,
+            @RequestPart("file") MultipartFile file) {
+        try (InputStream upload = file.getInputStream()) {
+            return toCreatedResponse(mergeJobService.createFromUpload(request, upload));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(412).body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/merge-jobs/{id}")
+    public ResponseEntity getJob(@PathVariable String id) {
+        return toResponse(mergeJobService.getJob(id));
+    }
+
+    @PostMapping("/merge-jobs/{id}/pause")
+    public ResponseEntity pauseJob(@PathVariable String id) {
+        try {
+            return toResponse(mergeJobService.pause(id));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/merge-jobs/{id}/resume")
+    public ResponseEntity resumeJob(@PathVariable String id) {
+        try {
+            return toResponse(mergeJobService.resume(id));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(e.getMessage());
+        }
+    }
+
+    private ResponseEntity toCreatedResponse(MergeJob job) {
+        return ResponseEntity.status(202)
+                .location(URI.create("/merge-jobs/" + job.getId()))
+                .body(job);
+    }
+
+    private ResponseEntity toResponse(MergeJob job) {
+        if (job == null)
+            return ResponseEntity.status(404).body("Unknown merge job!");
+        return ResponseEntity.status(200).body(job);
+    }
+}
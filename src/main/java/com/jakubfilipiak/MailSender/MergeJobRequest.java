@@ -0,0 +1,27 @@
+package com.jakubfilipiak.MailSender;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.Map;
+
+@Getter
+@Builder
+@JsonDeserialize(builder = MergeJobRequest.MergeJobRequestBuilder.class)
+public class MergeJobRequest {
+
+    private final String source; // file name inside email.merge.source-dir, unused for uploads
+    private final MergeFormat format;
+    private final String recipientColumn;
+    private final String subject;
+    private final String textContent;
+    private final Boolean isHtml;
+    private final Map<String, String> attachments; // <filePath, fileName>
+    private final MessagePriority priority; // BULK when missing
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static class MergeJobRequestBuilder {
+    }
+}
@@ -0,0 +1,321 @@
+package com.jakubfilipiak.MailSender;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.google.common.base.Preconditions;
+import com.google.common.io.CountingInputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class MergeJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(MergeJobService.class);
+    private static final TypeReference<Map<String, String>> ROW_TYPE = new TypeReference<Map<String, String>>() {};
+    private static final String DEFAULT_RECIPIENT_COLUMN = "email";
+    private static final String CHECKPOINT_SUFFIX = ".json";
+
+    private EmailSender emailSender;
+    private EmailDispatcher emailDispatcher;
+    private ObjectMapper objectMapper;
+    private CsvMapper csvMapper = new CsvMapper();
+    private Path jobDir;
+    private Path sourceDir;
+    private long checkpointNanos;
+    private int submitWindow;
+    private Map<String, MergeJob> jobs = new ConcurrentHashMap<>();
+    private ExecutorService runners;
+
+    public MergeJobService(
+            EmailSender emailSender,
+            EmailDispatcher emailDispatcher,
+            ObjectMapper objectMapper,
+            @Value("${email.merge.dir:merge}") String jobDir,
+            @Value("${email.merge.source-dir:merge-sources}") String sourceDir,
+            @Value("${email.merge.checkpoint-ms:1000}") long checkpointMillis,
+            @Value("${email.merge.submit-window:64}") int submitWindow,
+            @Value("${email.merge.threads:2}") int threads) {
+        this.emailSender = emailSender;
+        this.emailDispatcher = emailDispatcher;
+        this.objectMapper = objectMapper;
+        this.jobDir = Paths.get(jobDir).toAbsolutePath().normalize();
+        this.sourceDir = Paths.get(sourceDir).toAbsolutePath().normalize();
+        this.checkpointNanos = TimeUnit.MILLISECONDS.toNanos(checkpointMillis);
+        this.submitWindow = Math.max(submitWindow, 1);
+        this.runners = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("email-merge-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(jobDir);
+        try (DirectoryStream<Path> checkpoints = Files.newDirectoryStream(jobDir, "*" + CHECKPOINT_SUFFIX)) {
+            for (Path checkpoint : checkpoints) {
+                MergeJob job = new MergeJob(objectMapper.readValue(checkpoint.toFile(), MergeCheckpoint.class));
+                jobs.put(job.getId(), job);
+                if (job.getStatus() == MergeJobStatus.RUNNING)
+                    runners.execute(() -> run(job));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        // interrupted jobs checkpoint as RUNNING and pick up from their offset on the next start
+        runners.shutdownNow();
+        runners.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    public MergeJob create(MergeJobRequest request) throws IllegalArgumentException, IOException {
+        checkRequest(request);
+        Preconditions.checkArgument(request.getSource() != null, "Wrong source!");
+        Path source = sourceDir.resolve(request.getSource()).normalize();
+        Preconditions.checkArgument(source.startsWith(sourceDir), "Wrong source!");
+        if (!Files.isRegularFile(source))
+            throw new FileNotFoundException("Source not found!");
+        return start(new MergeJob(UUID.randomUUID().toString(), request, source, false, Files.size(source)));
+    }
+
+    public MergeJob createFromUpload(MergeJobRequest request, InputStream upload) throws
+            IllegalArgumentException,
+            IOException {
+        checkRequest(request);
+        String id = UUID.randomUUID().toString();
+        Path source = jobDir.resolve(id + ".upload");
+        Files.copy(upload, source);
+        return start(new MergeJob(id, request, source, true, Files.size(source)));
+    }
+
+    public MergeJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    public MergeJob pause(String id) throws IllegalStateException {
+        MergeJob job = jobs.get(id);
+        if (job == null)
+            return null;
+        synchronized (job) {
+            Preconditions.checkState(job.getStatus() == MergeJobStatus.RUNNING, "Merge job is not running!");
+            job.requestPause();
+        }
+        return job;
+    }
+
+    public MergeJob resume(String id) throws IllegalStateException {
+        MergeJob job = jobs.get(id);
+        if (job == null)
+            return null;
+        synchronized (job) {
+            Preconditions.checkState(job.getStatus() == MergeJobStatus.PAUSED
+                    || job.getStatus() == MergeJobStatus.FAILED, "Merge job cannot be resumed!");
+            job.markRunning();
+        }
+        return start(job);
+    }
+
+    private MergeJob start(MergeJob job) {
+        jobs.put(job.getId(), job);
+        checkpoint(job);
+        runners.execute(() -> run(job));
+        return job;
+    }
+
+    private void checkRequest(MergeJobRequest request) throws IllegalArgumentException {
+        Preconditions.checkArgument(request.getFormat() != null, "Wrong format!");
+        Preconditions.checkArgument(request.getSubject() != null
+                && !request.getSubject().isEmpty(), "Wrong subject!");
+        Preconditions.checkArgument(request.getTextContent() != null, "Wrong textContent!");
+        Preconditions.checkArgument(request.getIsHtml() != null, "Wrong isHtml!");
+        CompiledTemplate.compile(request.getSubject());
+        CompiledTemplate.compile(request.getTextContent());
+    }
+
+    private void run(MergeJob job) {
+        MergeJobRequest request = job.getRequest();
+        CompiledTemplate subject = CompiledTemplate.compile(request.getSubject());
+        CompiledTemplate textContent = CompiledTemplate.compile(request.getTextContent());
+        String recipientColumn = request.getRecipientColumn() != null
+                ? request.getRecipientColumn()
+                : DEFAULT_RECIPIENT_COLUMN;
+        CountingInputStream input;
+        try {
+            // not an interruptible channel, so stopping the runners cannot fail a job mid-read
+            input = new CountingInputStream(new FileInputStream(job.getSourcePath().toFile()));
+        } catch (FileNotFoundException e) {
+            job.markFailed(e.getMessage());
+            checkpoint(job);
+            return;
+        }
+        // rows are journaled a window at a time so their appends share group commits, while the job's
+        // offset only moves past the oldest rows once they are queued
+        Deque<PendingRow> window = new ArrayDeque<>(submitWindow);
+        try (MappingIterator<Map<String, String>> rows = openRows(job, input)) {
+            long startOffset = job.getRowOffset();
+            long row = 0;
+            long checkpointedAt = System.nanoTime();
+            while (rows.hasNextValue()) {
+                Map<String, String> values;
+                try {
+                    values = rows.nextValue();
+                } catch (JsonMappingException e) {
+                    values = null;
+                }
+                if (row++ < startOffset)
+                    continue;
+                if (job.isPauseRequested()) {
+                    // the offset stops moving before the job reports PAUSED
+                    while (!window.isEmpty())
+                        settle(job, window.poll());
+                    job.markPaused();
+                    checkpoint(job);
+                    return;
+                }
+                CompletableFuture<MessageJob> journaled = null;
+                if (values != null) {
+                    try {
+                        MessageParams params = MessageParams.builder()
+                                .recipient(values.get(recipientColumn))
+                                .subject(subject.render(values, false))
+                                .textContent(textContent.render(values, request.getIsHtml()))
+                                .isHtml(request.getIsHtml())
+                                .attachments(request.getAttachments())
+                                .priority(request.getPriority() != null ? request.getPriority() : MessagePriority.BULK)
+                                .build();
+                        emailSender.validateMessage(params);
+                        journaled = emailDispatcher.journal(params);
+                    } catch (IllegalArgumentException | FileNotFoundException e) {
+                        // settled as invalid in row order
+                    }
+                }
+                window.add(new PendingRow(journaled, input.getCount()));
+                if (window.size() >= submitWindow)
+                    settle(job, window.poll());
+                // rows submitted since the last checkpoint are sent again after a crash, on top of the outbox replay
+                if (System.nanoTime() - checkpointedAt >= checkpointNanos) {
+                    checkpoint(job);
+                    checkpointedAt = System.nanoTime();
+                }
+            }
+            while (!window.isEmpty())
+                settle(job, window.poll());
+            job.readUpTo(input.getCount());
+            rows.close();
+            if (job.isUploaded())
+                Files.deleteIfExists(job.getSourcePath());
+            job.markCompleted();
+            checkpoint(job);
+        } catch (InterruptedException e) {
+            discard(window);
+            checkpoint(job);
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            discard(window);
+            log.warn("Merge job {} failed at row {}", job.getId(), job.getRowOffset(), e);
+            job.markFailed(e.getMessage());
+            checkpoint(job);
+        }
+    }
+
+    private void settle(MergeJob job, PendingRow row) throws InterruptedException, IOException {
+        if (row.journaled == null) {
+            job.rowInvalid();
+        } else {
+            MessageJob journaled;
+            try {
+                journaled = row.journaled.get();
+            } catch (InterruptedException e) {
+                emailDispatcher.discardJournaled(row.journaled);
+                throw e;
+            } catch (ExecutionException e) {
+                throw new IOException("Writing to the outbox journal failed!", e.getCause());
+            }
+            emailDispatcher.enqueueJournaled(journaled);
+            job.rowSubmitted();
+        }
+        job.readUpTo(row.bytesRead);
+    }
+
+    // rows after the offset are read again on resume, so their journal entries must not be replayed too
+    private void discard(Deque<PendingRow> window) {
+        for (PendingRow row : window)
+            if (row.journaled != null)
+                emailDispatcher.discardJournaled(row.journaled);
+        window.clear();
+    }
+
+    private MappingIterator<Map<String, String>> openRows(MergeJob job, InputStream input) throws IOException {
+        if (job.getRequest().getFormat() == MergeFormat.CSV)
+            return csvMapper.readerFor(ROW_TYPE)
+                    .with(CsvSchema.emptySchema().withHeader())
+                    .readValues(input);
+        return objectMapper.readerFor(ROW_TYPE).readValues(input);
+    }
+
+    // runners and pause or resume requests checkpoint the same job, so writes go one at a time
+    private void checkpoint(MergeJob job) {
+        Path checkpoint = jobDir.resolve(job.getId() + CHECKPOINT_SUFFIX);
+        synchronized (job) {
+            Path temporary = null;
+            try {
+                temporary = Files.createTempFile(jobDir, job.getId(), ".tmp");
+                objectMapper.writeValue(temporary.toFile(), job.toCheckpoint());
+                Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                log.error("Checkpointing merge job {} failed", job.getId(), e);
+                deleteQuietly(temporary);
+            }
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null)
+            return;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Deleting {} failed", path, e);
+        }
+    }
+
+    private static class PendingRow {
+
+        private final CompletableFuture<MessageJob> journaled; // null for an invalid row
+        private final long bytesRead;
+
+        private PendingRow(CompletableFuture<MessageJob> journaled, long bytesRead) {
+            this.journaled = journaled;
+            this.bytesRead = bytesRead;
+        }
+    }
+}
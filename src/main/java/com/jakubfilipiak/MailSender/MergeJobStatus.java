@@ -0,0 +1,8 @@
+package com.jakubfilipiak.MailSender;
+
+public enum MergeJobStatus {
+    RUNNING,
+    PAUSED,
+    COMPLETED,
+    FAILED
+}
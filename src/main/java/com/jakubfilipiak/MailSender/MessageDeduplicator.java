@@ -0,0 +1,142 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+@Component
+public class MessageDeduplicator {
+
+    private boolean enabled;
+    private boolean deduplicateContent;
+    private Cache<String, Submission> submissions;
+
+    @Autowired
+    public MessageDeduplicator(
+            @Value("${email.idempotency.enabled:true}") boolean enabled,
+            @Value("${email.idempotency.deduplicate-content:false}") boolean deduplicateContent,
+            @Value("${email.idempotency.window-seconds:600}") long windowSeconds,
+            @Value("${email.idempotency.max-entries:100000}") long maxEntries) {
+        this(enabled, deduplicateContent, windowSeconds, maxEntries, Ticker.systemTicker());
+    }
+
+    MessageDeduplicator(
+            boolean enabled,
+            boolean deduplicateContent,
+            long windowSeconds,
+            long maxEntries,
+            Ticker ticker) {
+        this.enabled = enabled;
+        this.deduplicateContent = deduplicateContent;
+        this.submissions = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(windowSeconds, TimeUnit.SECONDS)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    public <T> CompletableFuture<T> deduplicate(
+            String idempotencyKey,
+            MessageParams messageParams,
+            Supplier<CompletableFuture<T>> send,
+            Predicate<T> remember) {
+        if (!enabled || (idempotencyKey == null && !deduplicateContent))
+            return send.get();
+        HashCode contentHash = hashContent(messageParams);
+        String key = idempotencyKey != null ? "key:" + idempotencyKey : "content:" + contentHash;
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Submission submission = new Submission(contentHash, result);
+        Submission original = submissions.asMap().putIfAbsent(key, submission);
+        if (original != null) {
+            if (!original.contentHash.equals(contentHash))
+                throw new IllegalStateException("Idempotency key reused with different content!");
+            @SuppressWarnings("unchecked")
+            CompletableFuture<T> originalResult = (CompletableFuture<T>) original.result;
+            return originalResult;
+        }
+        // a result that asks the client to come back later must not be replayed
+        result.whenComplete((value, failure) -> {
+            if (failure != null || !remember.test(value))
+                submissions.asMap().remove(key, submission);
+        });
+        try {
+            send.get().whenComplete((value, failure) -> {
+                if (failure != null)
+                    result.completeExceptionally(failure);
+                else
+                    result.complete(value);
+            });
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            throw e;
+        }
+        return result;
+    }
+
+    public CacheStats getCacheStats() {
+        return submissions.stats();
+    }
+
+    static HashCode hashContent(MessageParams messageParams) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        putString(hasher, messageParams.getRecipient());
+        putString(hasher, messageParams.getSubject());
+        putString(hasher, messageParams.getTextContent());
+        putString(hasher, messageParams.getIsHtml() == null ? null : messageParams.getIsHtml().toString());
+        putMap(hasher, messageParams.getAttachments());
+        putString(hasher, messageParams.getTemplateId());
+        putString(hasher, messageParams.getTemplateVersion() == null
+                ? null : messageParams.getTemplateVersion().toString());
+        putMap(hasher, messageParams.getVariables());
+        return hasher.hash();
+    }
+
+    private static void putString(Hasher hasher, String value) {
+        // length prefix keeps ("ab", "c") apart from ("a", "bc"), -1 marks a missing field
+        if (value == null) {
+            hasher.putInt(-1);
+            return;
+        }
+        hasher.putInt(value.length());
+        hasher.putString(value, StandardCharsets.UTF_8);
+    }
+
+    private static void putMap(Hasher hasher, Map<String, String> values) {
+        if (values == null) {
+            hasher.putInt(-1);
+            return;
+        }
+        hasher.putInt(values.size());
+        for (Map.Entry<String, String> entry : new TreeMap<>(values).entrySet()) {
+            putString(hasher, entry.getKey());
+            putString(hasher, entry.getValue());
+        }
+    }
+
+    private static class Submission {
+
+        private final HashCode contentHash;
+        private final CompletableFuture<?> result;
+
+        private Submission(HashCode contentHash, CompletableFuture<?> result) {
+            this.contentHash = contentHash;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.jakubfilipiak.MailSender;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+
+import java.time.Instant;
+
+@Getter
+public class MessageJob {
+
+    private final String id;
+    @JsonIgnore
+    private final MessageParams params;
+    private final MessagePriority priority;
+    private final Instant createdAt;
+    private volatile Instant updatedAt;
+    private volatile MessageJobStatus status;
+    private volatile String error;
+    private volatile int failedAttempts;
+
+    MessageJob(String id, MessageParams params) {
+        this.id = id;
+        this.params = params;
+        this.priority = MessagePriority.of(params);
+        this.createdAt = Instant.now();
+        this.updatedAt = createdAt;
+        this.status = MessageJobStatus.QUEUED;
+    }
+
+    void markQueued() {
+        changeStatus(MessageJobStatus.QUEUED, null);
+    }
+
+    void markSending() {
+        changeStatus(MessageJobStatus.SENDING, null);
+    }
+
+    void markSent() {
+        changeStatus(MessageJobStatus.SENT, null);
+    }
+
+    void markDeferred(String error) {
+        failedAttempts++;
+        changeStatus(MessageJobStatus.DEFERRED, error);
+    }
+
+    void markFailed(String error) {
+        failedAttempts++;
+        changeStatus(MessageJobStatus.FAILED, error);
+    }
+
+    void markDeadLettered(String error) {
+        failedAttempts++;
+        changeStatus(MessageJobStatus.DEAD_LETTERED, error);
+    }
+
+    private void changeStatus(MessageJobStatus status, String error) {
+        this.error = error;
+        this.updatedAt = Instant.now();
+        this.status = status;
+    }
+}
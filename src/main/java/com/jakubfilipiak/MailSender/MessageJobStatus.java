@@ -0,0 +1,10 @@
+package com.jakubfilipiak.MailSender;
+
+public enum MessageJobStatus {
+    QUEUED,
+    SENDING,
+    DEFERRED,
+    SENT,
+    FAILED,
+    DEAD_LETTERED
+}
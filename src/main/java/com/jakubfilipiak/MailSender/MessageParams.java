@@ -1,5 +1,7 @@
 package com.jakubfilipiak.MailSender;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
 import lombok.Builder;
 import lombok.Getter;
 
@@ -7,6 +9,7 @@ import java.util.Map;
 
 @Getter
 @Builder
+@JsonDeserialize(builder = MessageParams.MessageParamsBuilder.class)
 public class MessageParams {
 
     private final String recipient;
@@ -14,4 +17,12 @@ public class MessageParams {
     private final String textContent;
     private final Boolean isHtml;
     private final Map<String, String> attachments; // <filePath, fileName>
+    private final String templateId;
+    private final Integer templateVersion;
+    private final Map<String, String> variables;
+    private final MessagePriority priority; // NORMAL when missing
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static class MessageParamsBuilder {
+    }
 }
@@ -0,0 +1,11 @@
+package com.jakubfilipiak.MailSender;
+
+public enum MessagePriority {
+    TRANSACTIONAL,
+    NORMAL,
+    BULK;
+
+    public static MessagePriority of(MessageParams params) {
+        return params.getPriority() != null ? params.getPriority() : NORMAL;
+    }
+}
@@ -0,0 +1,20 @@
+package com.jakubfilipiak.MailSender;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+@JsonDeserialize(builder = MessageTemplate.MessageTemplateBuilder.class)
+public class MessageTemplate {
+
+    private final String name;
+    private final Integer version;
+    private final String content;
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static class MessageTemplateBuilder {
+    }
+}
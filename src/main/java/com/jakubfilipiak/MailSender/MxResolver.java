@@ -0,0 +1,10 @@
+package com.jakubfilipiak.MailSender;
+
+import javax.naming.NamingException;
+import java.util.List;
+
+public interface MxResolver {
+
+    // returns the hosts accepting mail for the domain, empty when the domain does not exist or accepts no mail
+    List<String> resolveMailExchangers(String domain) throws NamingException;
+}
@@ -0,0 +1,351 @@
+package com.jakubfilipiak.MailSender;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+@Component
+public class OutboxJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxJournal.class);
+
+    private static final byte ENQUEUE = 1;
+    private static final byte ACK = 2;
+    private static final byte DEAD = 3;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+    private static final int MAX_BATCH = 1024;
+
+    private ObjectMapper objectMapper;
+    private boolean enabled;
+    private Path directory;
+    private long segmentBytes;
+    private BlockingQueue<PendingWrite> pendingWrites = new LinkedBlockingQueue<>();
+    private Map<String, byte[]> recoveredEntries = new LinkedHashMap<>();
+    private Map<String, byte[]> recoveredDeadLetters = new LinkedHashMap<>();
+    private Thread writer;
+    private volatile boolean closed;
+
+    // owned by the writer thread once the journal is open
+    private Map<String, Long> liveRecords = new HashMap<>();
+    private Map<Long, Integer> liveRecordsPerSegment = new HashMap<>();
+    // older segments still on disk holding records that a segment's acks and newer records cancel
+    private Map<Long, Set<Long>> cancelledSegments = new HashMap<>();
+    private Set<Long> segments = new TreeSet<>();
+    private long activeSegment;
+    private FileChannel activeChannel;
+
+    public OutboxJournal(
+            ObjectMapper objectMapper,
+            @Value("${email.outbox.enabled:false}") boolean enabled,
+            @Value("${email.outbox.dir:outbox}") String directory,
+            @Value("${email.outbox.segment-bytes:67108864}") long segmentBytes) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentBytes = segmentBytes;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled)
+            return;
+        Files.createDirectories(directory);
+        List<Long> existingSegments = listSegments();
+        segments.addAll(existingSegments);
+        for (long segment : existingSegments)
+            replaySegment(segment);
+        activeSegment = existingSegments.isEmpty() ? 0 : existingSegments.get(existingSegments.size() - 1) + 1;
+        activeChannel = FileChannel.open(segmentPath(activeSegment),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segments.add(activeSegment);
+        writer = new Thread(this::writeRecords, "email-outbox-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Outbox journal opened in {} with {} undelivered messages and {} dead letters",
+                directory, recoveredEntries.size(), recoveredDeadLetters.size());
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        if (!enabled || closed)
+            return;
+        closed = true;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        activeChannel.force(false);
+        activeChannel.close();
+    }
+
+    public synchronized Map<String, MessageParams> takeRecoveredEntries() throws IOException {
+        Map<String, MessageParams> entries = new LinkedHashMap<>();
+        for (Map.Entry<String, byte[]> entry : recoveredEntries.entrySet())
+            entries.put(entry.getKey(), objectMapper.readValue(entry.getValue(), MessageParams.class));
+        recoveredEntries.clear();
+        return entries;
+    }
+
+    public synchronized Map<String, DeadLetter> takeRecoveredDeadLetters() throws IOException {
+        Map<String, DeadLetter> deadLetters = new LinkedHashMap<>();
+        for (Map.Entry<String, byte[]> entry : recoveredDeadLetters.entrySet())
+            deadLetters.put(entry.getKey(), objectMapper.readValue(entry.getValue(), DeadLetter.class));
+        recoveredDeadLetters.clear();
+        return deadLetters;
+    }
+
+    public void append(String id, MessageParams params) throws IOException {
+        await(appendAsync(id, params));
+    }
+
+    // completes once the record is durable, callers keeping several appends in flight share one fsync
+    public CompletableFuture<Void> appendAsync(String id, MessageParams params) {
+        if (!enabled)
+            return CompletableFuture.completedFuture(null);
+        try {
+            return submit(ENQUEUE, id, objectMapper.writeValueAsBytes(params), true);
+        } catch (IOException e) {
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    public void appendDeadLetter(DeadLetter deadLetter) throws IOException {
+        if (enabled)
+            await(submit(DEAD, deadLetter.getId(), objectMapper.writeValueAsBytes(deadLetter), true));
+    }
+
+    public void ack(String id) {
+        if (enabled)
+            submit(ACK, id, new byte[0], false);
+    }
+
+    private void await(CompletableFuture<Void> written) throws IOException {
+        try {
+            written.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing to the outbox journal!", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Writing to the outbox journal failed!", e.getCause());
+        }
+    }
+
+    private CompletableFuture<Void> submit(byte type, String id, byte[] payload, boolean durable) {
+        PendingWrite write = new PendingWrite(type, id, payload, durable);
+        if (closed)
+            write.written.completeExceptionally(new IOException("Outbox journal is closed!"));
+        else pendingWrites.add(write);
+        return write.written;
+    }
+
+    private void writeRecords() {
+        List<PendingWrite> batch = new ArrayList<>(MAX_BATCH);
+        while (!closed || !pendingWrites.isEmpty()) {
+            try {
+                PendingWrite first = pendingWrites.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+                pendingWrites.drainTo(batch, MAX_BATCH - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                closed = true;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<PendingWrite> batch) {
+        try {
+            ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+            boolean durable = false;
+            for (int i = 0; i < batch.size(); i++) {
+                buffers[i] = encode(batch.get(i));
+                durable |= batch.get(i).durable;
+            }
+            long remaining = 0;
+            for (ByteBuffer buffer : buffers)
+                remaining += buffer.remaining();
+            while (remaining > 0)
+                remaining -= activeChannel.write(buffers);
+            // group commit: one fsync covers every record in the batch
+            if (durable)
+                activeChannel.force(false);
+            for (PendingWrite write : batch) {
+                track(write.type, write.id, activeSegment);
+                write.written.complete(null);
+            }
+            if (activeChannel.position() >= segmentBytes)
+                rotateSegment();
+        } catch (IOException e) {
+            log.error("Writing to the outbox journal failed", e);
+            for (PendingWrite write : batch)
+                write.written.completeExceptionally(e);
+        }
+    }
+
+    private ByteBuffer encode(PendingWrite write) {
+        byte[] id = write.id.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + 2 + id.length + write.payload.length;
+        ByteBuffer buffer = ByteBuffer.allocate(4 + length + 4);
+        buffer.putInt(length)
+                .put(write.type)
+                .putShort((short) id.length)
+                .put(id)
+                .put(write.payload);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 4, length);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    private void rotateSegment() throws IOException {
+        activeChannel.close();
+        long finishedSegment = activeSegment;
+        activeSegment++;
+        activeChannel = FileChannel.open(segmentPath(activeSegment),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segments.add(activeSegment);
+        deleteIfCompacted(finishedSegment);
+    }
+
+    private void replaySegment(long segment) throws IOException {
+        activeSegment = segment;
+        Path path = segmentPath(segment);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 65536))) {
+            while (true) {
+                int length = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES)
+                    throw new EOFException();
+                byte[] record = new byte[length];
+                in.readFully(record);
+                CRC32 crc = new CRC32();
+                crc.update(record);
+                if (in.readInt() != (int) crc.getValue())
+                    throw new EOFException();
+                ByteBuffer buffer = ByteBuffer.wrap(record);
+                byte type = buffer.get();
+                byte[] id = new byte[buffer.getShort()];
+                buffer.get(id);
+                String jobId = new String(id, StandardCharsets.UTF_8);
+                track(type, jobId, segment);
+                byte[] payload = new byte[buffer.remaining()];
+                buffer.get(payload);
+                recoveredEntries.remove(jobId);
+                recoveredDeadLetters.remove(jobId);
+                if (type == ENQUEUE)
+                    recoveredEntries.put(jobId, payload);
+                else if (type == DEAD)
+                    recoveredDeadLetters.put(jobId, payload);
+            }
+        } catch (EOFException e) {
+            // end of segment or a torn record left by a crash in the middle of a write
+        }
+        deleteIfCompacted(segment);
+    }
+
+    private void track(byte type, String id, long segment) {
+        Long previousSegment = type == ACK ? liveRecords.remove(id) : liveRecords.put(id, segment);
+        if (type != ACK)
+            liveRecordsPerSegment.merge(segment, 1, Integer::sum);
+        // the cancelled record would come back on replay if this segment went first
+        if (previousSegment != null && previousSegment != segment)
+            cancelledSegments.computeIfAbsent(segment, key -> new HashSet<>()).add(previousSegment);
+        if (previousSegment != null && liveRecordsPerSegment.merge(previousSegment, -1, Integer::sum) == 0) {
+            liveRecordsPerSegment.remove(previousSegment);
+            if (previousSegment != activeSegment)
+                deleteIfCompacted(previousSegment);
+        }
+    }
+
+    private void deleteIfCompacted(long segment) {
+        if (!segments.contains(segment)
+                || liveRecordsPerSegment.containsKey(segment)
+                || cancelledSegments.containsKey(segment))
+            return;
+        try {
+            Files.deleteIfExists(segmentPath(segment));
+        } catch (IOException e) {
+            log.warn("Deleting outbox segment {} failed", segment, e);
+            return;
+        }
+        segments.remove(segment);
+        List<Long> unblockedSegments = new ArrayList<>();
+        cancelledSegments.entrySet().removeIf(entry -> {
+            entry.getValue().remove(segment);
+            if (!entry.getValue().isEmpty())
+                return false;
+            unblockedSegments.add(entry.getKey());
+            return true;
+        });
+        for (long unblockedSegment : unblockedSegments)
+            if (unblockedSegment != activeSegment)
+                deleteIfCompacted(unblockedSegment);
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private static class PendingWrite {
+
+        private final byte type;
+        private final String id;
+        private final byte[] payload;
+        private final boolean durable;
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+        private PendingWrite(byte type, String id, byte[] payload, boolean durable) {
+            this.type = type;
+            this.id = id;
+            this.payload = payload;
+            this.durable = durable;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.jakubfilipiak.MailSender;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.lang.Nullable;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import javax.mail.Address;
+import javax.mail.AuthenticationFailedException;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import java.io.PrintStream;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+public class PooledJavaMailSender extends JavaMailSenderImpl implements DisposableBean {
+
+    private static final String HEADER_MESSAGE_ID = "Message-ID";
+    private static final long MAX_TRACE_BYTES = 64 * 1024;
+
+    private static final Logger log = LoggerFactory.getLogger(PooledJavaMailSender.class);
+
+    private SmtpConnectionPool pool;
+    private ProtocolTraceSampler traceSampler;
+
+    public PooledJavaMailSender(
+            int maxSize,
+            int maxMessagesPerConnection,
+            long idleTimeoutMillis,
+            long borrowTimeoutMillis) {
+        this.pool = new SmtpConnectionPool(
+                this::connectTransport,
+                maxSize,
+                maxMessagesPerConnection,
+                idleTimeoutMillis,
+                borrowTimeoutMillis);
+    }
+
+    public SmtpConnectionPool getPool() {
+        return pool;
+    }
+
+    public void setTraceSampler(ProtocolTraceSampler traceSampler) {
+        this.traceSampler = traceSampler;
+    }
+
+    @Override
+    public void destroy() {
+        pool.close();
+    }
+
+    @Override
+    protected void doSend(MimeMessage[] mimeMessages, @Nullable Object[] originalMessages) throws MailException {
+        Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+        PooledTransport transport = null;
+        try {
+            for (int i = 0; i < mimeMessages.length; i++) {
+                MimeMessage mimeMessage = mimeMessages[i];
+                if (traceSampler != null && traceSampler.shouldTrace()) {
+                    try {
+                        sendTraced(mimeMessage);
+                    } catch (Exception ex) {
+                        failedMessages.put(original(mimeMessages, originalMessages, i), ex);
+                    }
+                    continue;
+                }
+                if (transport == null)
+                    transport = borrowTransport(mimeMessages, originalMessages, i, failedMessages);
+                try {
+                    sendMessage(transport, mimeMessage);
+                } catch (Exception ex) {
+                    if (transport.getTransport().isConnected()) {
+                        failedMessages.put(original(mimeMessages, originalMessages, i), ex);
+                    } else {
+                        // the server dropped the connection, so retry once on a fresh one
+                        pool.invalidate(transport);
+                        transport = null;
+                        transport = borrowTransport(mimeMessages, originalMessages, i, failedMessages);
+                        try {
+                            sendMessage(transport, mimeMessage);
+                        } catch (Exception retryEx) {
+                            failedMessages.put(original(mimeMessages, originalMessages, i), retryEx);
+                        }
+                    }
+                }
+                if (pool.isExhausted(transport)) {
+                    pool.release(transport);
+                    transport = null;
+                }
+            }
+        } finally {
+            if (transport != null)
+                pool.release(transport);
+        }
+        if (!failedMessages.isEmpty())
+            throw new MailSendException(failedMessages);
+    }
+
+    private PooledTransport borrowTransport(
+            MimeMessage[] mimeMessages,
+            @Nullable Object[] originalMessages,
+            int from,
+            Map<Object, Exception> failedMessages) throws MailException {
+        try {
+            return pool.borrow();
+        } catch (AuthenticationFailedException ex) {
+            throw new MailAuthenticationException(ex);
+        } catch (Exception ex) {
+            for (int i = from; i < mimeMessages.length; i++)
+                failedMessages.put(original(mimeMessages, originalMessages, i), ex);
+            throw new MailSendException("Mail server connection failed", ex, failedMessages);
+        }
+    }
+
+    private void sendMessage(PooledTransport transport, MimeMessage mimeMessage) throws MessagingException {
+        prepareMessage(mimeMessage);
+        transport.getTransport().sendMessage(mimeMessage, getRecipients(mimeMessage));
+        transport.messageSent();
+    }
+
+    private void sendTraced(MimeMessage mimeMessage) throws MessagingException {
+        // a one-off debug session keeps the protocol transcript away from pooled connections
+        Properties properties = new Properties();
+        properties.putAll(getJavaMailProperties());
+        properties.setProperty("mail.debug", "true");
+        Session session = Session.getInstance(properties);
+        prepareMessage(mimeMessage);
+        String messageId = mimeMessage.getMessageID();
+        SmtpTraceOutputStream transcript = new SmtpTraceOutputStream(
+                line -> log.info("SMTP trace {}: {}", messageId, line), MAX_TRACE_BYTES);
+        session.setDebugOut(new PrintStream(transcript, true));
+        session.setDebug(true);
+        Transport transport = session.getTransport(getProtocol() != null ? getProtocol() : DEFAULT_PROTOCOL);
+        try {
+            transport.connect(getHost(), getPort(), getUsername(), getPassword());
+            transport.sendMessage(mimeMessage, getRecipients(mimeMessage));
+        } finally {
+            try {
+                transport.close();
+            } finally {
+                transcript.close();
+            }
+        }
+    }
+
+    private void prepareMessage(MimeMessage mimeMessage) throws MessagingException {
+        if (mimeMessage.getSentDate() == null)
+            mimeMessage.setSentDate(new Date());
+        String messageId = mimeMessage.getMessageID();
+        mimeMessage.saveChanges();
+        if (messageId != null)
+            mimeMessage.setHeader(HEADER_MESSAGE_ID, messageId);
+    }
+
+    private Address[] getRecipients(MimeMessage mimeMessage) throws MessagingException {
+        Address[] addresses = mimeMessage.getAllRecipients();
+        return addresses != null ? addresses : new Address[0];
+    }
+
+    private Object original(MimeMessage[] mimeMessages, @Nullable Object[] originalMessages, int index) {
+        return originalMessages != null ? originalMessages[index] : mimeMessages[index];
+    }
+}
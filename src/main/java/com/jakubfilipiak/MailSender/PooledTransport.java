@@ -0,0 +1,29 @@
+package com.jakubfilipiak.MailSender;
+
+import lombok.Getter;
+
+import javax.mail.Transport;
+
+@Getter
+public class PooledTransport {
+
+    private final Transport transport;
+    private final long createdAt;
+    private volatile long lastUsedAt;
+    private volatile int messagesSent;
+
+    PooledTransport(Transport transport) {
+        this.transport = transport;
+        this.createdAt = System.currentTimeMillis();
+        this.lastUsedAt = createdAt;
+    }
+
+    void messageSent() {
+        messagesSent++;
+        lastUsedAt = System.currentTimeMillis();
+    }
+
+    boolean isIdleLongerThan(long millis) {
+        return System.currentTimeMillis() - lastUsedAt > millis;
+    }
+}
@@ -0,0 +1,31 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.base.Preconditions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+@Component
+public class ProtocolTraceSampler {
+
+    private volatile double sampleRate;
+
+    public ProtocolTraceSampler(@Value("${email.trace.sample-rate:0}") double sampleRate) {
+        setSampleRate(sampleRate);
+    }
+
+    public boolean shouldTrace() {
+        double rate = sampleRate;
+        return rate > 0 && (rate >= 1 || ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        Preconditions.checkArgument(sampleRate >= 0 && sampleRate <= 1, "Wrong sample rate!");
+        this.sampleRate = sampleRate;
+    }
+}
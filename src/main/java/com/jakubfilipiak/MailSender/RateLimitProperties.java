@@ -0,0 +1,27 @@
+package com.jakubfilipiak.MailSender;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties("email.rate-limit")
+public class RateLimitProperties {
+
+    private Limit global = new Limit();
+    private Limit domain = new Limit();
+    private Map<String, Limit> domains = new HashMap<>();
+
+    @Getter
+    @Setter
+    public static class Limit {
+
+        private double permitsPerSecond; // 0 means unlimited
+        private int burst = 1;
+        private int maxConcurrent; // 0 means unlimited
+    }
+}
@@ -0,0 +1,28 @@
+package com.jakubfilipiak.MailSender;
+
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+
+// load balancers only route to instances that finished warming up and are not draining
+@Component
+@WebEndpoint(id = "readiness")
+public class ReadinessEndpoint {
+
+    private ServiceState serviceState;
+
+    public ReadinessEndpoint(ServiceState serviceState) {
+        this.serviceState = serviceState;
+    }
+
+    @ReadOperation
+    public WebEndpointResponse<Map<String, ServiceStatus>> readiness() {
+        ServiceStatus status = serviceState.getStatus();
+        return new WebEndpointResponse<>(
+                Collections.singletonMap("status", status), status == ServiceStatus.READY ? 200 : 503);
+    }
+}
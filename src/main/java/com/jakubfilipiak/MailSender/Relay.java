@@ -0,0 +1,24 @@
+package com.jakubfilipiak.MailSender;
+
+import lombok.Getter;
+import org.springframework.mail.javamail.JavaMailSender;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Getter
+public class Relay {
+
+    private final String name;
+    private final JavaMailSender mailSender;
+    private final int weight;
+    private final CircuitBreaker circuitBreaker;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    int currentWeight; // smooth weighted round-robin state, guarded by the router
+
+    public Relay(String name, JavaMailSender mailSender, int weight, CircuitBreaker circuitBreaker) {
+        this.name = name;
+        this.mailSender = mailSender;
+        this.weight = Math.max(weight, 1);
+        this.circuitBreaker = circuitBreaker;
+    }
+}
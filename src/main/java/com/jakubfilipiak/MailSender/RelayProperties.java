@@ -0,0 +1,48 @@
+package com.jakubfilipiak.MailSender;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties("email.relays")
+public class RelayProperties {
+
+    private RoutingStrategy strategy = RoutingStrategy.LEAST_IN_FLIGHT;
+    private List<Server> servers = new ArrayList<>(); // empty means the single spring.mail relay
+    private Map<String, List<String>> domains = new HashMap<>(); // <recipient domain, relay names>
+    private Breaker circuitBreaker = new Breaker();
+
+    @Getter
+    @Setter
+    public static class Server {
+
+        private String name;
+        private String host;
+        private Integer port;
+        private String username;
+        private String password;
+        private String protocol = "smtp";
+        private int weight = 1;
+        private int maxConnections = 4;
+        private int maxMessagesPerConnection = 100;
+        private Map<String, String> properties = new HashMap<>(); // overrides spring.mail.properties
+    }
+
+    @Getter
+    @Setter
+    public static class Breaker {
+
+        private Boolean enabled; // unset enables it only when there is another relay to fail over to
+        private int failureThreshold = 5; // 0 disables the breaker
+        private long openMs = 30000;
+        private int halfOpenMaxCalls = 1;
+        private int successThreshold = 3;
+    }
+}
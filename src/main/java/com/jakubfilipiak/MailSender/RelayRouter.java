@@ -0,0 +1,195 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.base.Ascii;
+import com.google.common.base.Preconditions;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RelayRouter implements DisposableBean {
+
+    private static final long NO_RELAY_RETRY_MILLIS = 1000;
+
+    private List<Relay> relays;
+    private RoutingStrategy strategy;
+    private Map<String, List<Relay>> domainRelays = new HashMap<>();
+    private FailureClassifier failureClassifier;
+    private JavaMailSender messageFactory;
+    private AtomicInteger nextStart = new AtomicInteger();
+
+    public RelayRouter(
+            List<Relay> relays,
+            RoutingStrategy strategy,
+            Map<String, List<String>> domainRules,
+            FailureClassifier failureClassifier,
+            JavaMailSender messageFactory) throws IllegalArgumentException {
+        Preconditions.checkArgument(!relays.isEmpty(), "No SMTP relay configured!");
+        this.relays = new ArrayList<>(relays);
+        this.strategy = strategy;
+        this.failureClassifier = failureClassifier;
+        this.messageFactory = messageFactory;
+        domainRules.forEach((domain, names) -> {
+            List<Relay> routed = new ArrayList<>();
+            for (String name : names)
+                routed.add(getRelay(name));
+            domainRelays.put(Ascii.toLowerCase(domain), routed);
+        });
+    }
+
+    public static RelayRouter single(JavaMailSender mailSender) {
+        return new RelayRouter(
+                Collections.singletonList(new Relay("default", mailSender, 1, CircuitBreaker.disabled())),
+                RoutingStrategy.LEAST_IN_FLIGHT,
+                Collections.emptyMap(),
+                new FailureClassifier(),
+                mailSender);
+    }
+
+    public List<Relay> getRelays() {
+        return Collections.unmodifiableList(relays);
+    }
+
+    // messages are composed before routing and may fail over, so their session must not belong to one relay
+    public MimeMessage createMimeMessage() {
+        return messageFactory.createMimeMessage();
+    }
+
+    public Relay route(String recipient) throws SendRateLimitedException {
+        List<Relay> candidates = getCandidates(recipient);
+        Relay relay = select(candidates, null);
+        if (relay == null)
+            throw new SendRateLimitedException("No SMTP relay available for " + recipient + "!",
+                    getRetryAfterMillis(candidates));
+        return relay;
+    }
+
+    // another relay to retry on after the given one failed, or null when there is none
+    public Relay routeFallback(String recipient, Relay failed, Exception failure) {
+        if (!failureClassifier.isRelayFailure(failure))
+            return null;
+        return select(getCandidates(recipient), failed);
+    }
+
+    // every message was routed separately, so it holds its own trial slot while the breaker is half open
+    public void send(Relay relay, MimeMessage... messages) throws MailException {
+        CircuitBreaker circuitBreaker = relay.getCircuitBreaker();
+        int unsettledTrials = messages.length;
+        relay.getInFlight().addAndGet(messages.length);
+        try {
+            relay.getMailSender().send(messages);
+            for (int i = 0; i < messages.length; i++)
+                circuitBreaker.recordSuccess();
+            unsettledTrials = 0;
+        } catch (MailException e) {
+            Map<Object, Exception> failedMessages = e instanceof MailSendException
+                    ? ((MailSendException) e).getFailedMessages()
+                    : Collections.emptyMap();
+            if (failedMessages.isEmpty()) {
+                if (failureClassifier.isRelayFailure(e)) {
+                    circuitBreaker.recordFailure();
+                    unsettledTrials = 0;
+                }
+            } else {
+                // a partly failed batch still tells apart the messages the relay took from those it refused
+                for (MimeMessage message : messages) {
+                    Exception cause = failedMessages.get(message);
+                    if (cause == null)
+                        circuitBreaker.recordSuccess();
+                    else if (failureClassifier.isRelayFailure(cause))
+                        circuitBreaker.recordFailure();
+                    else
+                        continue;
+                    unsettledTrials--;
+                }
+            }
+            throw e;
+        } finally {
+            // recipient, message and local pool failures, like unexpected exceptions, are no verdict on the relay
+            circuitBreaker.release(unsettledTrials);
+            relay.getInFlight().addAndGet(-messages.length);
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        for (Relay relay : relays)
+            if (relay.getMailSender() instanceof DisposableBean)
+                ((DisposableBean) relay.getMailSender()).destroy();
+    }
+
+    private Relay getRelay(String name) throws IllegalArgumentException {
+        for (Relay relay : relays)
+            if (relay.getName().equals(name))
+                return relay;
+        throw new IllegalArgumentException("Unknown relay " + name + "!");
+    }
+
+    private List<Relay> getCandidates(String recipient) {
+        if (domainRelays.isEmpty())
+            return relays;
+        String domain = Ascii.toLowerCase(recipient.substring(recipient.lastIndexOf('@') + 1));
+        return domainRelays.getOrDefault(domain, relays);
+    }
+
+    private Relay select(List<Relay> candidates, Relay excluded) {
+        // a half-open breaker may hand its last trial slot to another thread, so pick again when that happens
+        for (int attempt = 0; attempt < candidates.size(); attempt++) {
+            Relay relay = strategy == RoutingStrategy.WEIGHTED_ROUND_ROBIN
+                    ? selectWeighted(candidates, excluded)
+                    : selectLeastInFlight(candidates, excluded);
+            if (relay == null)
+                return null;
+            if (relay.getCircuitBreaker().tryAcquire())
+                return relay;
+        }
+        return null;
+    }
+
+    private Relay selectLeastInFlight(List<Relay> candidates, Relay excluded) {
+        int size = candidates.size();
+        int start = Math.floorMod(nextStart.getAndIncrement(), size);
+        Relay best = null;
+        for (int i = 0; i < size; i++) {
+            Relay relay = candidates.get((start + i) % size);
+            if (relay == excluded || !relay.getCircuitBreaker().isAvailable())
+                continue;
+            // compares inFlight / weight without dividing
+            if (best == null || (long) relay.getInFlight().get() * best.getWeight()
+                    < (long) best.getInFlight().get() * relay.getWeight())
+                best = relay;
+        }
+        return best;
+    }
+
+    private synchronized Relay selectWeighted(List<Relay> candidates, Relay excluded) {
+        Relay best = null;
+        int totalWeight = 0;
+        for (Relay relay : candidates) {
+            if (relay == excluded || !relay.getCircuitBreaker().isAvailable())
+                continue;
+            relay.currentWeight += relay.getWeight();
+            totalWeight += relay.getWeight();
+            if (best == null || relay.currentWeight > best.currentWeight)
+                best = relay;
+        }
+        if (best != null)
+            best.currentWeight -= totalWeight;
+        return best;
+    }
+
+    private long getRetryAfterMillis(List<Relay> candidates) {
+        long retryAfter = Long.MAX_VALUE;
+        for (Relay relay : candidates)
+            retryAfter = Math.min(retryAfter, relay.getCircuitBreaker().getRemainingOpenMillis());
+        return retryAfter > 0 && retryAfter != Long.MAX_VALUE ? retryAfter : NO_RELAY_RETRY_MILLIS;
+    }
+}
@@ -0,0 +1,98 @@
+package com.jakubfilipiak.MailSender;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+@Component
+public class RetryScheduler {
+
+    private DelayQueue<ScheduledRetry> retries = new DelayQueue<>();
+    private int maxAttempts;
+    private long initialDelayMillis;
+    private long maxDelayMillis;
+    private double multiplier;
+    private Thread thread;
+
+    public RetryScheduler(
+            @Value("${email.retry.max-attempts:5}") int maxAttempts,
+            @Value("${email.retry.initial-delay-ms:1000}") long initialDelayMillis,
+            @Value("${email.retry.max-delay-ms:300000}") long maxDelayMillis,
+            @Value("${email.retry.multiplier:2.0}") double multiplier) {
+        this.maxAttempts = maxAttempts;
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.multiplier = multiplier;
+    }
+
+    @PostConstruct
+    public void start() {
+        thread = new Thread(this::runDueRetries, "email-retry-scheduler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        thread.interrupt();
+    }
+
+    public boolean canRetry(int attempts) {
+        return attempts < maxAttempts;
+    }
+
+    public long nextDelayMillis(int attempts) {
+        double ceiling = Math.min(maxDelayMillis, initialDelayMillis * Math.pow(multiplier, Math.max(attempts - 1, 0)));
+        // equal jitter keeps retries of a burst of failures from hitting the server at the same moment
+        return (long) (ceiling / 2 + ThreadLocalRandom.current().nextDouble(ceiling / 2 + 1));
+    }
+
+    public void schedule(MessageJob job, long delayMillis, Consumer<MessageJob> onDue) {
+        retries.put(new ScheduledRetry(job, onDue, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis)));
+    }
+
+    public int getPendingRetries() {
+        return retries.size();
+    }
+
+    private void runDueRetries() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                ScheduledRetry retry = retries.take();
+                retry.onDue.accept(retry.job);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class ScheduledRetry implements Delayed {
+
+        private final MessageJob job;
+        private final Consumer<MessageJob> onDue;
+        private final long dueNanos;
+
+        private ScheduledRetry(MessageJob job, Consumer<MessageJob> onDue, long dueNanos) {
+            this.job = job;
+            this.onDue = onDue;
+            this.dueNanos = dueNanos;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueNanos, ((ScheduledRetry) other).dueNanos);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.jakubfilipiak.MailSender;
+
+public enum RoutingStrategy {
+    LEAST_IN_FLIGHT,
+    WEIGHTED_ROUND_ROBIN
+}
@@ -0,0 +1,74 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class SendExecutor implements Executor {
+
+    private static final Logger log = LoggerFactory.getLogger(SendExecutor.class);
+
+    private ExecutorService executor;
+    private boolean virtualThreads;
+
+    public SendExecutor(
+            @Value("${email.execution.fallback-threads:200}") int fallbackThreads,
+            @Value("${email.execution.fallback-queue-capacity:1000}") int fallbackQueueCapacity) {
+        executor = createVirtualThreadExecutor();
+        virtualThreads = executor != null;
+        if (!virtualThreads) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                    fallbackThreads, fallbackThreads, 60, TimeUnit.SECONDS,
+                    // a full queue rejects the task, which the controller answers with 503
+                    new LinkedBlockingQueue<>(fallbackQueueCapacity),
+                    new ThreadFactoryBuilder()
+                            .setNameFormat("email-send-%d")
+                            .setDaemon(true)
+                            .build());
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        executor.execute(command);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS))
+            executor.shutdownNow();
+    }
+
+    // looked up reflectively so the project still builds and runs on Java 8
+    private ExecutorService createVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ExecutorService virtualExecutor = (ExecutorService) factory.invoke(null);
+            log.info("Sending on virtual threads");
+            return virtualExecutor;
+        } catch (ReflectiveOperationException e) {
+            log.info("Virtual threads are not available on Java {}, sending on a platform thread pool",
+                    System.getProperty("java.specification.version"));
+            return null;
+        }
+    }
+}
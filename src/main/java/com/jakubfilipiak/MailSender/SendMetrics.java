@@ -0,0 +1,76 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.cache.CacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Function;
+
+@Component
+public class SendMetrics {
+
+    private MeterRegistry meterRegistry;
+
+    public SendMetrics(
+            MeterRegistry meterRegistry,
+            EmailDispatcher emailDispatcher,
+            DeadLetterStore deadLetterStore,
+            RelayRouter relayRouter,
+            AttachmentCache attachmentCache,
+            TemplateRegistry templateRegistry,
+            MessageDeduplicator messageDeduplicator) {
+        this.meterRegistry = meterRegistry;
+        for (MessagePriority priority : MessagePriority.values())
+            Gauge.builder("email.queue.depth", emailDispatcher, d -> d.getQueueDepth(priority))
+                    .description("Messages waiting in the dispatcher queue")
+                    .tag("lane", priority.name().toLowerCase())
+                    .register(meterRegistry);
+        Gauge.builder("email.retry.pending", emailDispatcher, EmailDispatcher::getPendingRetries)
+                .description("Messages waiting for their next delivery attempt")
+                .register(meterRegistry);
+        Gauge.builder("email.dead-letters", deadLetterStore, DeadLetterStore::size)
+                .register(meterRegistry);
+        for (Relay relay : relayRouter.getRelays())
+            registerRelayMeters(relay);
+        registerCacheCounters("attachments", attachmentCache, AttachmentCache::getStats);
+        registerCacheCounters("templates", templateRegistry, TemplateRegistry::getCacheStats);
+        registerCacheCounters("idempotency", messageDeduplicator, MessageDeduplicator::getCacheStats);
+    }
+
+    public void recordOutcome(int status) {
+        meterRegistry.counter("email.messages", "status", String.valueOf(status)).increment();
+    }
+
+    private void registerRelayMeters(Relay relay) {
+        Gauge.builder("email.relay.in-flight", relay, r -> r.getInFlight().get())
+                .tag("relay", relay.getName())
+                .register(meterRegistry);
+        Gauge.builder("email.relay.circuit", relay, r -> r.getCircuitBreaker().getState().ordinal())
+                .description("Circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .tag("relay", relay.getName())
+                .register(meterRegistry);
+        if (!(relay.getMailSender() instanceof PooledJavaMailSender))
+            return;
+        SmtpConnectionPool pool = ((PooledJavaMailSender) relay.getMailSender()).getPool();
+        Gauge.builder("email.smtp.connections", pool, SmtpConnectionPool::getOpenConnections)
+                .tags("relay", relay.getName(), "state", "open")
+                .register(meterRegistry);
+        Gauge.builder("email.smtp.connections", pool, SmtpConnectionPool::getIdleConnections)
+                .tags("relay", relay.getName(), "state", "idle")
+                .register(meterRegistry);
+        FunctionCounter.builder("email.smtp.connections.created", pool, SmtpConnectionPool::getCreatedConnections)
+                .tag("relay", relay.getName())
+                .register(meterRegistry);
+    }
+
+    private <T> void registerCacheCounters(String cache, T source, Function<T, CacheStats> stats) {
+        FunctionCounter.builder("email.cache.requests", source, s -> stats.apply(s).hitCount())
+                .tags("cache", cache, "result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("email.cache.requests", source, s -> stats.apply(s).missCount())
+                .tags("cache", cache, "result", "miss")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,14 @@
+package com.jakubfilipiak.MailSender;
+
+import lombok.Getter;
+
+@Getter
+public class SendRateLimitedException extends RuntimeException {
+
+    private final long retryAfterMillis;
+
+    public SendRateLimitedException(String message, long retryAfterMillis) {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+}
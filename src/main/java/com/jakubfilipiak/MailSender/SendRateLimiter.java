@@ -0,0 +1,132 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.cache.CacheBuilder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+@Component
+@EnableConfigurationProperties(RateLimitProperties.class)
+public class SendRateLimiter {
+
+    private static final long CONCURRENCY_RETRY_MILLIS = 50;
+    private static final long MIN_BUCKET_EXPIRY_MINUTES = 1;
+
+    private RateLimitProperties properties;
+    private TokenBucket globalBucket;
+    private Map<String, TokenBucket> domainBuckets;
+    private Map<String, Semaphore> domainPermits;
+
+    public SendRateLimiter(RateLimitProperties properties) {
+        this.properties = properties;
+        this.globalBucket = createBucket(properties.getGlobal());
+        // a bucket left idle for its whole burst tolerance is full again, so evicting it changes nothing
+        this.domainBuckets = CacheBuilder.newBuilder()
+                .expireAfterAccess(getBucketExpiryNanos(properties), TimeUnit.NANOSECONDS)
+                .<String, TokenBucket>build()
+                .asMap();
+        // senders keep the semaphore they acquired, so one is only collected once all its permits are back
+        this.domainPermits = CacheBuilder.newBuilder()
+                .weakValues()
+                .<String, Semaphore>build()
+                .asMap();
+    }
+
+    // returns the permits to hand back to release(), null when the domain has no concurrency limit
+    public Semaphore acquire(String recipient) throws SendRateLimitedException {
+        Semaphore permits = acquireConcurrency(recipient);
+        try {
+            acquireRate(recipient);
+        } catch (SendRateLimitedException e) {
+            release(permits);
+            throw e;
+        }
+        return permits;
+    }
+
+    public Semaphore acquireConcurrency(String recipient) throws SendRateLimitedException {
+        String domain = toDomain(recipient);
+        Semaphore permits = getPermits(domain);
+        if (permits != null && !permits.tryAcquire())
+            throw new SendRateLimitedException("Too many concurrent sends to " + domain + "!", CONCURRENCY_RETRY_MILLIS);
+        return permits;
+    }
+
+    public void acquireRate(String recipient) throws SendRateLimitedException {
+        String domain = toDomain(recipient);
+        TokenBucket domainBucket = getBucket(domain);
+        long waitNanos = tryAcquire(domainBucket);
+        if (waitNanos == 0) {
+            waitNanos = tryAcquire(globalBucket);
+            // without the refund global pressure would throttle the domain below its own rate
+            if (waitNanos > 0 && domainBucket != null)
+                domainBucket.refund();
+        }
+        if (waitNanos > 0)
+            throw new SendRateLimitedException("Send rate limit exceeded for " + domain + "!",
+                    Math.max(TimeUnit.NANOSECONDS.toMillis(waitNanos), 1));
+    }
+
+    // hands back the tokens of an acquireRate() whose message was never sent
+    public void refundRate(String recipient) {
+        refund(getBucket(toDomain(recipient)));
+        refund(globalBucket);
+    }
+
+    public void release(Semaphore permits) {
+        if (permits != null)
+            permits.release();
+    }
+
+    static String toDomain(String recipient) {
+        return recipient.substring(recipient.lastIndexOf('@') + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private long tryAcquire(TokenBucket bucket) {
+        return bucket != null ? bucket.tryAcquire() : 0;
+    }
+
+    private void refund(TokenBucket bucket) {
+        if (bucket != null)
+            bucket.refund();
+    }
+
+    private TokenBucket getBucket(String domain) {
+        TokenBucket bucket = domainBuckets.get(domain);
+        if (bucket == null && getLimit(domain).getPermitsPerSecond() > 0)
+            bucket = domainBuckets.computeIfAbsent(domain, key -> createBucket(getLimit(key)));
+        return bucket;
+    }
+
+    private Semaphore getPermits(String domain) {
+        Semaphore permits = domainPermits.get(domain);
+        if (permits == null && getLimit(domain).getMaxConcurrent() > 0)
+            permits = domainPermits.computeIfAbsent(domain, key -> new Semaphore(getLimit(key).getMaxConcurrent()));
+        return permits;
+    }
+
+    private RateLimitProperties.Limit getLimit(String domain) {
+        return properties.getDomains().getOrDefault(domain, properties.getDomain());
+    }
+
+    private TokenBucket createBucket(RateLimitProperties.Limit limit) {
+        return limit.getPermitsPerSecond() > 0 ? new TokenBucket(limit.getPermitsPerSecond(), limit.getBurst()) : null;
+    }
+
+    private static long getBucketExpiryNanos(RateLimitProperties properties) {
+        List<RateLimitProperties.Limit> limits = new ArrayList<>(properties.getDomains().values());
+        limits.add(properties.getDomain());
+        long expiryNanos = TimeUnit.MINUTES.toNanos(MIN_BUCKET_EXPIRY_MINUTES);
+        for (RateLimitProperties.Limit limit : limits)
+            if (limit.getPermitsPerSecond() > 0)
+                expiryNanos = Math.max(expiryNanos,
+                        (long) (TimeUnit.SECONDS.toNanos(Math.max(limit.getBurst(), 1)) / limit.getPermitsPerSecond()));
+        return expiryNanos;
+    }
+}
@@ -0,0 +1,46 @@
+package com.jakubfilipiak.MailSender;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class ServiceState {
+
+    private static final Logger log = LoggerFactory.getLogger(ServiceState.class);
+
+    private volatile ServiceStatus status = ServiceStatus.STARTING;
+    private AtomicInteger activeRequests = new AtomicInteger();
+
+    public ServiceStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ServiceStatus status) {
+        log.info("Mail sender is {}", status);
+        this.status = status;
+    }
+
+    public boolean isAcceptingRequests() {
+        return status != ServiceStatus.DRAINING && status != ServiceStatus.STOPPED;
+    }
+
+    // counted before the status check, so a drain that saw no active requests cannot miss one being accepted
+    public boolean tryStartRequest() {
+        activeRequests.incrementAndGet();
+        if (isAcceptingRequests())
+            return true;
+        activeRequests.decrementAndGet();
+        return false;
+    }
+
+    public void requestFinished() {
+        activeRequests.decrementAndGet();
+    }
+
+    public int getActiveRequests() {
+        return activeRequests.get();
+    }
+}
@@ -0,0 +1,5 @@
+package com.jakubfilipiak.MailSender;
+
+public enum ServiceStatus {
+    STARTING, WARMING_UP, READY, DRAINING, STOPPED
+}
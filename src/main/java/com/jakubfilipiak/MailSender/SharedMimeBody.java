@@ -0,0 +1,67 @@
+package com.jakubfilipiak.MailSender;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+import javax.mail.util.SharedByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class SharedMimeBody {
+
+    private static final byte[] HEADERS_END = {'\r', '\n', '\r', '\n'};
+
+    private Session session;
+    private byte[] bytes;
+    private int contentOffset;
+
+    private SharedMimeBody(Session session, byte[] bytes, int contentOffset) {
+        this.session = session;
+        this.bytes = bytes;
+        this.contentOffset = contentOffset;
+    }
+
+    // serializes the message once without the headers that differ between recipients
+    public static SharedMimeBody render(MimeMessage template) throws MessagingException {
+        template.removeHeader("To");
+        template.saveChanges();
+        template.removeHeader("Message-ID");
+        template.removeHeader("Date");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            template.writeTo(out);
+        } catch (IOException e) {
+            throw new MessagingException("Rendering message failed!", e);
+        }
+        byte[] bytes = out.toByteArray();
+        return new SharedMimeBody(template.getSession(), bytes, indexOfContent(bytes));
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public int getSize() {
+        return bytes.length;
+    }
+
+    SharedByteArrayInputStream newStream() {
+        return new SharedByteArrayInputStream(bytes);
+    }
+
+    void writeContentTo(OutputStream os) throws IOException {
+        os.write(bytes, contentOffset, bytes.length - contentOffset);
+    }
+
+    private static int indexOfContent(byte[] bytes) throws MessagingException {
+        outer:
+        for (int i = 0; i <= bytes.length - HEADERS_END.length; i++) {
+            for (int j = 0; j < HEADERS_END.length; j++)
+                if (bytes[i + j] != HEADERS_END[j])
+                    continue outer;
+            return i + HEADERS_END.length;
+        }
+        throw new MessagingException("Rendered message has no content!");
+    }
+}
@@ -0,0 +1,164 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SmtpConnectionPool implements Closeable {
+
+    public interface TransportConnector {
+        Transport connect() throws MessagingException;
+    }
+
+    private TransportConnector connector;
+    private int maxSize;
+    private int maxMessagesPerConnection;
+    private long idleTimeoutMillis;
+    private long borrowTimeoutMillis;
+    private Semaphore permits;
+    private BlockingDeque<PooledTransport> idleTransports = new LinkedBlockingDeque<>();
+    private AtomicInteger openConnections = new AtomicInteger();
+    private AtomicLong createdConnections = new AtomicLong();
+    private ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    public SmtpConnectionPool(
+            TransportConnector connector,
+            int maxSize,
+            int maxMessagesPerConnection,
+            long idleTimeoutMillis,
+            long borrowTimeoutMillis) {
+        this.connector = connector;
+        this.maxSize = maxSize;
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.permits = new Semaphore(maxSize, true);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("smtp-pool-evictor-%d")
+                .setDaemon(true)
+                .build());
+        long evictionPeriod = Math.max(idleTimeoutMillis / 2, 10);
+        evictor.scheduleWithFixedDelay(this::evictIdleTransports, evictionPeriod, evictionPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    public PooledTransport borrow() throws MessagingException {
+        acquirePermit();
+        try {
+            PooledTransport pooled;
+            while ((pooled = idleTransports.pollFirst()) != null) {
+                if (isReusable(pooled))
+                    return pooled;
+                discard(pooled);
+            }
+            return connect();
+        } catch (MessagingException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // connects and authenticates ahead of the first sends, returns the number of idle connections
+    public int prewarm(int connections) throws MessagingException {
+        int target = Math.min(connections, maxSize);
+        while (!closed && openConnections.get() < target)
+            idleTransports.offerLast(connect());
+        return idleTransports.size();
+    }
+
+    public void release(PooledTransport pooled) {
+        try {
+            if (closed || isExhausted(pooled))
+                discard(pooled);
+            else idleTransports.offerFirst(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    public void invalidate(PooledTransport pooled) {
+        try {
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    public boolean isExhausted(PooledTransport pooled) {
+        return pooled.getMessagesSent() >= maxMessagesPerConnection;
+    }
+
+    public int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    public int getIdleConnections() {
+        return idleTransports.size();
+    }
+
+    public long getCreatedConnections() {
+        return createdConnections.get();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledTransport pooled;
+        while ((pooled = idleTransports.pollFirst()) != null)
+            discard(pooled);
+    }
+
+    private void acquirePermit() throws MessagingException {
+        if (closed)
+            throw new SmtpPoolUnavailableException("SMTP connection pool is closed!");
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS))
+                throw new SmtpPoolUnavailableException("Timed out waiting for a free SMTP connection!");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SmtpPoolUnavailableException("Interrupted while waiting for a free SMTP connection!", e);
+        }
+    }
+
+    private boolean isReusable(PooledTransport pooled) {
+        // isConnected() issues a NOOP, so connections dropped by the server are detected here
+        return !pooled.isIdleLongerThan(idleTimeoutMillis) && pooled.getTransport().isConnected();
+    }
+
+    private PooledTransport connect() throws MessagingException {
+        Transport transport = connector.connect();
+        openConnections.incrementAndGet();
+        createdConnections.incrementAndGet();
+        return new PooledTransport(transport);
+    }
+
+    private void discard(PooledTransport pooled) {
+        openConnections.decrementAndGet();
+        try {
+            pooled.getTransport().close();
+        } catch (MessagingException e) {
+            // the connection is being thrown away anyway
+        }
+    }
+
+    private void evictIdleTransports() {
+        Iterator<PooledTransport> oldestFirst = idleTransports.descendingIterator();
+        while (oldestFirst.hasNext()) {
+            PooledTransport pooled = oldestFirst.next();
+            if (pooled.isIdleLongerThan(idleTimeoutMillis) && idleTransports.remove(pooled))
+                discard(pooled);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.jakubfilipiak.MailSender;
+
+import javax.mail.MessagingException;
+
+// the local connection pool could not hand out a connection, the relay itself was never asked
+public class SmtpPoolUnavailableException extends MessagingException {
+
+    public SmtpPoolUnavailableException(String message) {
+        super(message);
+    }
+
+    public SmtpPoolUnavailableException(String message, Exception cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,79 @@
+package com.jakubfilipiak.MailSender;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+// hands the JavaMail debug transcript over line by line, keeping commands and replies but not the DATA payload
+public class SmtpTraceOutputStream extends OutputStream {
+
+    private static final int MAX_LINE_BYTES = 1000;
+
+    private Consumer<String> lineConsumer;
+    private long maxTranscriptBytes;
+    private ByteArrayOutputStream line = new ByteArrayOutputStream();
+    private long lineBytes;
+    private boolean inData;
+    private long omittedBytes;
+    private long writtenBytes;
+    private boolean transcriptTruncated;
+
+    public SmtpTraceOutputStream(Consumer<String> lineConsumer, long maxTranscriptBytes) {
+        this.lineConsumer = lineConsumer;
+        this.maxTranscriptBytes = maxTranscriptBytes;
+    }
+
+    @Override
+    public void write(int b) {
+        if (b == '\n') {
+            endLine();
+            return;
+        }
+        if (line.size() < MAX_LINE_BYTES)
+            line.write(b);
+        lineBytes++;
+    }
+
+    @Override
+    public void close() {
+        if (lineBytes > 0)
+            endLine();
+    }
+
+    private void endLine() {
+        String text = new String(line.toByteArray(), StandardCharsets.US_ASCII);
+        if (text.endsWith("\r"))
+            text = text.substring(0, text.length() - 1);
+        if (inData) {
+            if (text.equals(".")) {
+                inData = false;
+                emit("[" + omittedBytes + " bytes of message content omitted]");
+                emit(text);
+            } else {
+                omittedBytes += lineBytes + 1;
+            }
+        } else {
+            emit(lineBytes > line.size() ? text + " [truncated]" : text);
+            // the server's go-ahead for DATA, everything up to the lone dot is the message itself
+            if (text.startsWith("354")) {
+                inData = true;
+                omittedBytes = 0;
+            }
+        }
+        line.reset();
+        lineBytes = 0;
+    }
+
+    private void emit(String text) {
+        if (transcriptTruncated)
+            return;
+        writtenBytes += text.length();
+        if (writtenBytes > maxTranscriptBytes) {
+            transcriptTruncated = true;
+            lineConsumer.accept("[trace truncated after " + maxTranscriptBytes + " bytes]");
+            return;
+        }
+        lineConsumer.accept(text);
+    }
+}
@@ -0,0 +1,93 @@
+package com.jakubfilipiak.MailSender;
+
+import javax.activation.DataHandler;
+import javax.activation.FileDataSource;
+import javax.mail.MessagingException;
+import javax.mail.Part;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeUtility;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Enumeration;
+
+public class StreamingFileBodyPart extends MimeBodyPart {
+
+    // 57 input bytes make one 76 character base64 line, so chunks never split a line
+    private static final int CHUNK_BYTES = 57 * 1024;
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private Path path;
+
+    public StreamingFileBodyPart(Path path, String contentType, String name) throws MessagingException {
+        this.path = path;
+        // getInputStream() still serves the raw file, only writeTo() is replaced
+        setDataHandler(new DataHandler(new FileDataSource(path.toFile())));
+        setHeader("Content-Type", contentType);
+        setHeader("Content-Transfer-Encoding", "base64");
+        setDisposition(Part.ATTACHMENT);
+        try {
+            setFileName(MimeUtility.encodeText(name));
+        } catch (UnsupportedEncodingException e) {
+            throw new MessagingException("Failed to encode attachment name!", e);
+        }
+    }
+
+    @Override
+    protected void updateHeaders() {
+        // headers are fixed above, the default would scan the whole file to pick an encoding
+    }
+
+    @Override
+    public void writeTo(OutputStream os) throws IOException, MessagingException {
+        Enumeration<?> headerLines = getAllHeaderLines();
+        while (headerLines.hasMoreElements()) {
+            os.write(((String) headerLines.nextElement()).getBytes(StandardCharsets.UTF_8));
+            os.write(CRLF);
+        }
+        os.write(CRLF);
+        writeBase64(path, os);
+        os.flush();
+    }
+
+    // reads the file through one small direct buffer, so neither the file nor its encoding is held in memory
+    static void writeBase64(Path path, OutputStream os) throws IOException {
+        Base64.Encoder encoder = Base64.getMimeEncoder();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_BYTES);
+        byte[] chunk = new byte[CHUNK_BYTES];
+        byte[] encoded = new byte[(int) encodedLength(CHUNK_BYTES)];
+        boolean firstChunk = true;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (true) {
+                buffer.clear();
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0);
+                buffer.flip();
+                int length = buffer.remaining();
+                if (length == 0)
+                    break;
+                if (!firstChunk)
+                    os.write(CRLF);
+                firstChunk = false;
+                buffer.get(chunk, 0, length);
+                if (length == CHUNK_BYTES) {
+                    os.write(encoded, 0, encoder.encode(chunk, encoded));
+                } else {
+                    os.write(encoder.encode(Arrays.copyOf(chunk, length)));
+                    break;
+                }
+            }
+        }
+    }
+
+    static long encodedLength(long bytes) {
+        long characters = (bytes + 2) / 3 * 4;
+        return characters + (characters - 1) / 76 * 2;
+    }
+}
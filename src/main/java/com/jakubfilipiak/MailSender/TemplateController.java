@@ -0,0 +1,56 @@
+package com.jakubfilipiak.MailSender;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+
+@RestController
+public class TemplateController {
+
+    private TemplateRegistry templateRegistry;
+
+    public TemplateController(TemplateRegistry templateRegistry) {
+        this.templateRegistry = templateRegistry;
+    }
+
+    @PostMapping("/templates")
+    public ResponseEntity registerTemplate(@RequestBody MessageTemplate template) {
+        MessageTemplate registered;
+        try {
+            registered = templateRegistry.register(template);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(412).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(e.getMessage());
+        }
+        // names are free text, so each segment is percent-encoded
+        URI location = UriComponentsBuilder.fromPath("/templates")
+                .pathSegment(registered.getName(), String.valueOf(registered.getVersion()))
+                .build()
+                .encode()
+                .toUri();
+        return ResponseEntity.status(201).location(location).body(registered);
+    }
+
+    @GetMapping("/templates/{name}")
+    public ResponseEntity getTemplate(@PathVariable String name) {
+        return toResponse(templateRegistry.getTemplate(name, null));
+    }
+
+    @GetMapping("/templates/{name}/{version}")
+    public ResponseEntity getTemplate(@PathVariable String name, @PathVariable Integer version) {
+        return toResponse(templateRegistry.getTemplate(name, version));
+    }
+
+    private ResponseEntity toResponse(MessageTemplate template) {
+        if (template == null)
+            return ResponseEntity.status(404).body("Unknown template!");
+        return ResponseEntity.status(200).body(template);
+    }
+}
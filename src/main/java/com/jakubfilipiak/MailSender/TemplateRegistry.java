@@ -0,0 +1,81 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+@Service
+public class TemplateRegistry {
+
+    private Map<String, NavigableMap<Integer, MessageTemplate>> templates = new ConcurrentHashMap<>();
+    private LoadingCache<MessageTemplate, CompiledTemplate> compiledTemplates;
+    private int maxVersions;
+
+    public TemplateRegistry(
+            @Value("${email.template.cache.max-chars:10000000}") long maxChars,
+            @Value("${email.template.max-versions:10}") int maxVersions) throws IllegalArgumentException {
+        Preconditions.checkArgument(maxVersions > 0, "Wrong number of template versions!");
+        this.maxVersions = maxVersions;
+        this.compiledTemplates = CacheBuilder.newBuilder()
+                .maximumWeight(maxChars)
+                .weigher((MessageTemplate template, CompiledTemplate compiled) -> compiled.getWeight())
+                .recordStats()
+                .build(CacheLoader.from(template -> CompiledTemplate.compile(template.getContent())));
+    }
+
+    public MessageTemplate register(MessageTemplate template) throws
+            IllegalArgumentException,
+            IllegalStateException {
+        Preconditions.checkArgument(template.getName() != null
+                && !template.getName().isEmpty(), "Wrong name!");
+        Preconditions.checkArgument(template.getVersion() != null
+                && template.getVersion() > 0, "Wrong version!");
+        Preconditions.checkArgument(template.getContent() != null, "Wrong content!");
+        CompiledTemplate compiled = CompiledTemplate.compile(template.getContent());
+        NavigableMap<Integer, MessageTemplate> versions = templates
+                .computeIfAbsent(template.getName(), name -> new ConcurrentSkipListMap<>());
+        synchronized (versions) {
+            MessageTemplate existing = versions.get(template.getVersion());
+            if (existing != null) {
+                if (existing.getContent().equals(template.getContent()))
+                    return existing;
+                throw new IllegalStateException("Template version already exists!");
+            }
+            if (versions.size() >= maxVersions && template.getVersion() < versions.firstKey())
+                throw new IllegalStateException("Template version is older than every kept version!");
+            versions.put(template.getVersion(), template);
+            compiledTemplates.put(template, compiled);
+            // only the newest versions are kept, so re-registering a template does not grow memory forever
+            while (versions.size() > maxVersions)
+                compiledTemplates.invalidate(versions.pollFirstEntry().getValue());
+        }
+        return template;
+    }
+
+    public MessageTemplate getTemplate(String name, Integer version) {
+        NavigableMap<Integer, MessageTemplate> versions = templates.get(name);
+        if (versions == null || versions.isEmpty())
+            return null;
+        return version != null ? versions.get(version) : versions.lastEntry().getValue();
+    }
+
+    public String render(String name, Integer version, Map<String, String> variables, boolean escapeHtml) throws
+            IllegalArgumentException {
+        MessageTemplate template = getTemplate(name, version);
+        Preconditions.checkArgument(template != null, "Unknown template!");
+        return compiledTemplates.getUnchecked(template).render(variables, escapeHtml);
+    }
+
+    public CacheStats getCacheStats() {
+        return compiledTemplates.stats();
+    }
+}
@@ -0,0 +1,35 @@
+package com.jakubfilipiak.MailSender;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TokenBucket {
+
+    // generic cell rate algorithm: the whole bucket state is one timestamp updated with CAS
+    private AtomicLong theoreticalArrivalTime = new AtomicLong(System.nanoTime());
+    private long intervalNanos;
+    private long burstToleranceNanos;
+
+    public TokenBucket(double permitsPerSecond, int burst) {
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.burstToleranceNanos = intervalNanos * Math.max(burst, 1);
+    }
+
+    public long tryAcquire() {
+        while (true) {
+            long now = System.nanoTime();
+            long current = theoreticalArrivalTime.get();
+            long next = Math.max(current, now) + intervalNanos;
+            long excessNanos = next - now - burstToleranceNanos;
+            if (excessNanos > 0)
+                return excessNanos;
+            if (theoreticalArrivalTime.compareAndSet(current, next))
+                return 0;
+        }
+    }
+
+    // hands back a permit taken by tryAcquire() that ended up unused
+    public void refund() {
+        theoreticalArrivalTime.addAndGet(-intervalNanos);
+    }
+}
@@ -0,0 +1,90 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.io.ByteStreams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import javax.mail.MessagingException;
+import java.io.IOException;
+
+// readiness is only reported once SMTP sessions are open and the send path has been compiled
+@Component
+public class WarmUpRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmUpRunner.class);
+
+    private ServiceState serviceState;
+    private RelayRouter relayRouter;
+    private EmailSenderImpl emailSender;
+    private boolean enabled;
+    private int connections;
+    private int iterations;
+    private String recipient;
+
+    public WarmUpRunner(
+            ServiceState serviceState,
+            RelayRouter relayRouter,
+            EmailSenderImpl emailSender,
+            @Value("${email.warm-up.enabled:false}") boolean enabled,
+            @Value("${email.warm-up.connections:2}") int connections,
+            @Value("${email.warm-up.iterations:10000}") int iterations,
+            @Value("${email.warm-up.recipient:warm-up@example.com}") String recipient) {
+        this.serviceState = serviceState;
+        this.relayRouter = relayRouter;
+        // warm-up compositions would otherwise skew the compose and stage timers
+        this.emailSender = emailSender.withoutMetrics();
+        this.enabled = enabled;
+        this.connections = connections;
+        this.iterations = iterations;
+        this.recipient = recipient;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (enabled) {
+            serviceState.setStatus(ServiceStatus.WARMING_UP);
+            long started = System.nanoTime();
+            prewarmConnections();
+            warmUpSendPath();
+            log.info("Warmed up in {} ms", (System.nanoTime() - started) / 1_000_000);
+        }
+        // a drain that began while warming up wins
+        if (serviceState.isAcceptingRequests())
+            serviceState.setStatus(ServiceStatus.READY);
+    }
+
+    private void prewarmConnections() {
+        for (Relay relay : relayRouter.getRelays()) {
+            if (!(relay.getMailSender() instanceof PooledJavaMailSender))
+                continue;
+            try {
+                int idle = ((PooledJavaMailSender) relay.getMailSender()).getPool().prewarm(connections);
+                log.info("Opened {} SMTP connections to relay {}", idle, relay.getName());
+            } catch (MessagingException e) {
+                // the relay may come up later, sends will connect on demand then
+                log.warn("Could not pre-connect to relay {}: {}", relay.getName(), e.getMessage());
+            }
+        }
+    }
+
+    private void warmUpSendPath() {
+        try {
+            for (int i = 0; i < iterations && serviceState.isAcceptingRequests(); i++) {
+                MessageParams params = MessageParams.builder()
+                        .recipient(recipient)
+                        .subject("Warm-up " + i)
+                        .textContent("<p>Warm-up message " + i + "</p>")
+                        .isHtml(i % 2 == 0)
+                        .build();
+                emailSender.validateMessage(params);
+                emailSender.composeMessage(params).writeTo(ByteStreams.nullOutputStream());
+            }
+        } catch (IllegalArgumentException | MessagingException | IOException e) {
+            log.warn("Could not warm up the send path: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class WebhookDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookDispatcher.class);
+
+    private DeliveryEventBus eventBus;
+    private RestTemplate restTemplate;
+    private Map<String, WebhookSubscription> subscriptions = new ConcurrentHashMap<>();
+    private String[] configuredUrls;
+    private int bufferCapacity;
+    private int batchSize;
+    private long flushMillis;
+    private long maxBackoffMillis;
+    private int maxSubscriptions;
+
+    public WebhookDispatcher(
+            DeliveryEventBus eventBus,
+            RestTemplateBuilder restTemplateBuilder,
+            @Value("${email.webhooks.urls:}") String[] configuredUrls,
+            @Value("${email.webhooks.buffer-capacity:10000}") int bufferCapacity,
+            @Value("${email.webhooks.batch-size:100}") int batchSize,
+            @Value("${email.webhooks.flush-ms:1000}") long flushMillis,
+            @Value("${email.webhooks.timeout-ms:5000}") long timeoutMillis,
+            @Value("${email.webhooks.max-backoff-ms:60000}") long maxBackoffMillis,
+            @Value("${email.webhooks.max-subscriptions:20}") int maxSubscriptions) {
+        this.eventBus = eventBus;
+        this.restTemplate = restTemplateBuilder
+                .setConnectTimeout(Duration.ofMillis(timeoutMillis))
+                .setReadTimeout(Duration.ofMillis(timeoutMillis))
+                .build();
+        this.configuredUrls = configuredUrls;
+        this.bufferCapacity = bufferCapacity;
+        this.batchSize = batchSize;
+        this.flushMillis = flushMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.maxSubscriptions = maxSubscriptions;
+    }
+
+    @PostConstruct
+    public void start() {
+        for (String url : configuredUrls)
+            if (!url.trim().isEmpty())
+                register(url.trim());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        for (WebhookSubscription subscription : subscriptions.values())
+            subscription.getFlusher().shutdownNow();
+        for (WebhookSubscription subscription : subscriptions.values())
+            subscription.getFlusher().awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    public WebhookSubscription register(String url) throws IllegalArgumentException, RejectedExecutionException {
+        Preconditions.checkArgument(isHttpUrl(url), "Wrong webhook url!");
+        WebhookSubscription subscription = new WebhookSubscription(UUID.randomUUID().toString(), url, bufferCapacity);
+        // every subscription owns a flusher thread, so their number is bounded
+        synchronized (subscriptions) {
+            if (subscriptions.size() >= maxSubscriptions)
+                throw new RejectedExecutionException("Too many webhooks!");
+            subscriptions.put(subscription.getId(), subscription);
+        }
+        eventBus.subscribe(subscription.getSubscriber());
+        // each receiver gets its own thread, so a slow one only delays its own batches
+        ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("email-webhook-" + subscription.getId() + "-%d")
+                .setDaemon(true)
+                .build());
+        flusher.scheduleWithFixedDelay(() -> flush(subscription), flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        subscription.setFlusher(flusher);
+        return subscription;
+    }
+
+    public WebhookSubscription unregister(String id) {
+        WebhookSubscription subscription = subscriptions.remove(id);
+        if (subscription != null) {
+            eventBus.unsubscribe(subscription.getSubscriber());
+            subscription.getFlusher().shutdown();
+        }
+        return subscription;
+    }
+
+    public WebhookSubscription getSubscription(String id) {
+        return subscriptions.get(id);
+    }
+
+    public Collection<WebhookSubscription> getSubscriptions() {
+        return new ArrayList<>(subscriptions.values());
+    }
+
+    void flush(WebhookSubscription subscription) {
+        if (subscription.isBackingOff())
+            return;
+        List<DeliveryEvent> batch;
+        while (!(batch = subscription.getBuffer().drain(batchSize)).isEmpty()) {
+            try {
+                restTemplate.postForEntity(subscription.getUrl(), batch, Void.class);
+                subscription.delivered(batch.size());
+            } catch (RestClientException e) {
+                subscription.getBuffer().restore(batch);
+                long backoff = Math.min(maxBackoffMillis,
+                        flushMillis << Math.min(subscription.getConsecutiveFailures(), 20));
+                subscription.failed(e.getMessage(), backoff);
+                log.warn("Posting {} delivery events to {} failed: {}", batch.size(), subscription.getUrl(), e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private boolean isHttpUrl(String url) {
+        if (url == null)
+            return false;
+        try {
+            URI uri = URI.create(url);
+            return ("http".equals(uri.getScheme()) || "https".equals(uri.getScheme())) && uri.getHost() != null;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
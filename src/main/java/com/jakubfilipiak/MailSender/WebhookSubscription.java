@@ -0,0 +1,63 @@
+package com.jakubfilipiak.MailSender;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+
+@Getter
+public class WebhookSubscription {
+
+    private final String id;
+    private final String url;
+    @JsonIgnore
+    private final EventBuffer buffer;
+    @JsonIgnore
+    private final Consumer<DeliveryEvent> subscriber;
+    @JsonIgnore
+    private volatile ScheduledExecutorService flusher;
+    private volatile long deliveredEvents;
+    private volatile long failedPosts;
+    private volatile int consecutiveFailures;
+    private volatile String lastError;
+    private volatile Instant nextAttemptAt;
+
+    WebhookSubscription(String id, String url, int bufferCapacity) {
+        this.id = id;
+        this.url = url;
+        this.buffer = new EventBuffer(bufferCapacity);
+        this.subscriber = buffer::offer;
+    }
+
+    public int getBufferedEvents() {
+        return buffer.size();
+    }
+
+    public long getDroppedEvents() {
+        return buffer.getDroppedEvents();
+    }
+
+    boolean isBackingOff() {
+        Instant next = nextAttemptAt;
+        return next != null && Instant.now().isBefore(next);
+    }
+
+    void setFlusher(ScheduledExecutorService flusher) {
+        this.flusher = flusher;
+    }
+
+    void delivered(int events) {
+        deliveredEvents += events;
+        consecutiveFailures = 0;
+        nextAttemptAt = null;
+    }
+
+    void failed(String error, long backoffMillis) {
+        failedPosts++;
+        consecutiveFailures++;
+        lastError = error;
+        nextAttemptAt = Instant.now().plusMillis(backoffMillis);
+    }
+}
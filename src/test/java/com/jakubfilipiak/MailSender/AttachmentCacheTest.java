@@ -0,0 +1,63 @@
+package com.jakubfilipiak.MailSender;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.mail.internet.MimeBodyPart;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class AttachmentCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldCacheFilesEncodedInChunks() throws Exception {
+        AttachmentCache attachmentCache = new AttachmentCache(16 * 1024 * 1024, 16 * 1024 * 1024);
+        // several full read chunks plus a partial one
+        byte[] content = new byte[5 * 57 * 1024 + 1000];
+        new Random(1).nextBytes(content);
+        File file = folder.newFile("report.pdf");
+        Files.write(file.toPath(), content);
+
+        MimeBodyPart bodyPart = attachmentCache.createBodyPart(file.getPath(), "report.pdf");
+        attachmentCache.createBodyPart(file.getPath(), "report.pdf");
+
+        byte[] expected = Base64.getMimeEncoder().encode(content);
+        assertEquals(expected.length, attachmentCache.getWeight());
+        assertEquals(1, attachmentCache.getStats().hitCount());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bodyPart.writeTo(out);
+        String written = new String(out.toByteArray(), StandardCharsets.US_ASCII);
+        String body = written.substring(written.indexOf("\r\n\r\n") + 4);
+        assertEquals(new String(expected, StandardCharsets.US_ASCII), body.trim());
+        assertArrayEquals(content, Base64.getMimeDecoder().decode(body.trim()));
+    }
+
+    @Test
+    public void shouldUseWholeBudgetForLargeFiles() throws Exception {
+        AttachmentCache attachmentCache = new AttachmentCache(10_000, 16 * 1024 * 1024);
+        long expectedWeight = 0;
+        for (String name : new String[]{"first.pdf", "second.pdf"}) {
+            byte[] content = new byte[3000];
+            new Random(1).nextBytes(content);
+            File file = folder.newFile(name);
+            Files.write(file.toPath(), content);
+            attachmentCache.createBodyPart(file.getPath(), name);
+            attachmentCache.createBodyPart(file.getPath(), name);
+            expectedWeight += Base64.getMimeEncoder().encode(content).length;
+        }
+
+        assertEquals(expectedWeight, attachmentCache.getWeight());
+        assertEquals(2, attachmentCache.getStats().hitCount());
+    }
+}
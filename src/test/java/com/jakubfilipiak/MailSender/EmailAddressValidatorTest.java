@@ -0,0 +1,118 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.base.Ticker;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.naming.ServiceUnavailableException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EmailAddressValidatorTest {
+
+    private Map<String, List<String>> dnsRecords;
+    private AtomicInteger lookups;
+    private AtomicLong nanos;
+    private boolean dnsDown;
+    private EmailAddressValidator addressValidator;
+
+    @Before
+    public void setUp() throws Exception {
+        dnsRecords = new HashMap<>();
+        dnsRecords.put("example.com", Collections.singletonList("mx.example.com"));
+        lookups = new AtomicInteger();
+        nanos = new AtomicLong();
+        MxResolver stubResolver = domain -> {
+            lookups.incrementAndGet();
+            if (dnsDown)
+                throw new ServiceUnavailableException("DNS down");
+            return dnsRecords.getOrDefault(domain, Collections.emptyList());
+        };
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        addressValidator = new EmailAddressValidator(
+                new DomainDeliverabilityChecker(stubResolver, true, 60, 100, ticker));
+    }
+
+    @Test
+    public void shouldAcceptCorrectAddresses() {
+        EmailAddressValidator syntaxValidator = new EmailAddressValidator();
+        assertTrue(syntaxValidator.isCorrect("jan.kowalski@example.com"));
+        assertTrue(syntaxValidator.isCorrect("jan+newsletter@mail.example.co.uk"));
+        assertTrue(syntaxValidator.isCorrect("o'connor_1@sub-domain.example.com"));
+        assertTrue(syntaxValidator.isCorrect("a@b.cd"));
+    }
+
+    @Test
+    public void shouldRejectWrongAddresses() {
+        EmailAddressValidator syntaxValidator = new EmailAddressValidator();
+        assertFalse(syntaxValidator.isCorrect("wrongRecipient@gmail"));
+        assertFalse(syntaxValidator.isCorrect("jan kowalski@example.com"));
+        assertFalse(syntaxValidator.isCorrect("jan@kowalski@example.com"));
+        assertFalse(syntaxValidator.isCorrect("@example.com"));
+        assertFalse(syntaxValidator.isCorrect("jan@"));
+        assertFalse(syntaxValidator.isCorrect(".jan@example.com"));
+        assertFalse(syntaxValidator.isCorrect("jan.@example.com"));
+        assertFalse(syntaxValidator.isCorrect("jan..kowalski@example.com"));
+        assertFalse(syntaxValidator.isCorrect("jan@example..com"));
+        assertFalse(syntaxValidator.isCorrect("jan@.example.com"));
+        assertFalse(syntaxValidator.isCorrect("jan@example.com."));
+        assertFalse(syntaxValidator.isCorrect("jan@-example.com"));
+        assertFalse(syntaxValidator.isCorrect("jan@example-.com"));
+        assertFalse(syntaxValidator.isCorrect("jan@exa_mple.com"));
+        assertFalse(syntaxValidator.isCorrect(repeat('a', 65) + "@example.com"));
+        assertFalse(syntaxValidator.isCorrect("jan@" + repeat('a', 64) + ".com"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNullAddress() {
+        new EmailAddressValidator().isCorrect(null);
+    }
+
+    @Test
+    public void shouldRejectDomainsWithoutMailExchangers() {
+        assertTrue(addressValidator.isCorrect("jan@example.com"));
+        assertFalse(addressValidator.isCorrect("jan@no-such-domain.com"));
+    }
+
+    @Test
+    public void shouldCacheLookupsUntilTheyExpire() {
+        assertTrue(addressValidator.isCorrect("jan@example.com"));
+        assertTrue(addressValidator.isCorrect("anna@EXAMPLE.com"));
+        assertEquals(1, lookups.get());
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        dnsRecords.remove("example.com");
+        assertFalse(addressValidator.isCorrect("jan@example.com"));
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void shouldAcceptAndNotCacheWhenDnsIsDown() {
+        dnsDown = true;
+        assertTrue(addressValidator.isCorrect("jan@no-such-domain.com"));
+        dnsDown = false;
+        assertFalse(addressValidator.isCorrect("jan@no-such-domain.com"));
+        assertEquals(2, lookups.get());
+    }
+
+    private String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++)
+            builder.append(c);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,65 @@
+package com.jakubfilipiak.MailSender;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+public class EmailBatchProcessorTest {
+
+    private SmtpStub smtpStub;
+    private PooledJavaMailSender mailSender;
+    private List<DeliveryEvent> events = new CopyOnWriteArrayList<>();
+    private EmailBatchProcessor batchProcessor;
+
+    @Before
+    public void setUp() throws Exception {
+        smtpStub = new SmtpStub();
+        mailSender = smtpStub.createMailSender(1);
+        RateLimitProperties.Limit limit = new RateLimitProperties.Limit();
+        limit.setPermitsPerSecond(0.001);
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setDomain(limit);
+        DeliveryEventBus eventBus = new DeliveryEventBus();
+        eventBus.subscribe(events::add);
+        batchProcessor = new EmailBatchProcessor(
+                TestFixtures.createEmailSender(RelayRouter.single(mailSender), new SendRateLimiter(properties)),
+                eventBus,
+                new ObjectMapper(),
+                100);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mailSender.destroy();
+        smtpStub.close();
+    }
+
+    @Test
+    public void shouldPublishAnEventForEveryItem() throws Exception {
+        String json = "["
+                + "{\"recipient\":\"jan@example.com\",\"subject\":\"Subject\",\"textContent\":\"Text\",\"isHtml\":false},"
+                + "{\"recipient\":\"anna@example.com\",\"subject\":\"Subject\",\"textContent\":\"Text\",\"isHtml\":false},"
+                + "{\"recipient\":\"piotr@example.com\",\"subject\":\"\",\"textContent\":\"Text\",\"isHtml\":false}]";
+
+        batchProcessor.process(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        List<String> published = new ArrayList<>();
+        for (DeliveryEvent event : events)
+            published.add(event.getType() + " " + event.getRecipient());
+        assertEquals(Arrays.asList(
+                "ACCEPTED jan@example.com",
+                "SENT jan@example.com",
+                "REJECTED anna@example.com",
+                "REJECTED piotr@example.com"), published);
+    }
+}
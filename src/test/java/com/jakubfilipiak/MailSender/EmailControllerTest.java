@@ -0,0 +1,73 @@
+package com.jakubfilipiak.MailSender;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.jakubfilipiak.MailSender.TestFixtures.createParams;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "email.queue.enabled=true",
+                "spring.mail.host=localhost",
+                "spring.mail.properties.mail.smtp.auth=false",
+                "spring.mail.properties.mail.smtp.starttls.enable=false"})
+public class EmailControllerTest {
+
+    private static SmtpStub smtpStub;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    // the context starts after this, so it picks up the stub's port
+    @BeforeClass
+    public static void startSmtpStub() throws Exception {
+        smtpStub = new SmtpStub();
+        System.setProperty("spring.mail.port", String.valueOf(smtpStub.getPort()));
+    }
+
+    @AfterClass
+    public static void stopSmtpStub() throws Exception {
+        System.clearProperty("spring.mail.port");
+        smtpStub.close();
+    }
+
+    @Test
+    public void shouldAcceptQueuedMessageAndReportItsStatus() throws Exception {
+        ResponseEntity<Map> accepted = restTemplate.postForEntity("/messages", createParams(), Map.class);
+
+        assertEquals(202, accepted.getStatusCodeValue());
+        URI location = accepted.getHeaders().getLocation();
+        assertEquals("/messages/" + accepted.getBody().get("id"), location.getPath());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        ResponseEntity<Map> status = restTemplate.getForEntity(location, Map.class);
+        while (!"SENT".equals(status.getBody().get("status")) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            status = restTemplate.getForEntity(location, Map.class);
+        }
+        assertEquals(200, status.getStatusCodeValue());
+        assertEquals("SENT", status.getBody().get("status"));
+        assertEquals(1, smtpStub.getMessageCount());
+    }
+
+    @Test
+    public void shouldNotFindUnknownMessage() {
+        ResponseEntity<String> response = restTemplate.getForEntity("/messages/unknown", String.class);
+
+        assertEquals(404, response.getStatusCodeValue());
+        assertEquals("Unknown message id!", response.getBody());
+    }
+}
@@ -0,0 +1,138 @@
+package com.jakubfilipiak.MailSender;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.jakubfilipiak.MailSender.TestFixtures.createParams;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class EmailDispatcherTest {
+
+    private SmtpStub smtpStub;
+    private PooledJavaMailSender mailSender;
+    private OutboxJournal outboxJournal;
+    private RetryScheduler retryScheduler;
+    private DeadLetterStore deadLetterStore;
+    private EmailDispatcher emailDispatcher;
+
+    @Before
+    public void setUp() throws Exception {
+        smtpStub = new SmtpStub();
+        mailSender = smtpStub.createMailSender(2);
+        outboxJournal = new OutboxJournal(new ObjectMapper(), false, "outbox", 1024);
+        retryScheduler = new RetryScheduler(3, 10, 50, 2.0);
+        retryScheduler.start();
+        deadLetterStore = new DeadLetterStore(outboxJournal);
+        emailDispatcher = createDispatcher(deadLetterStore, 10_000);
+    }
+
+    private EmailDispatcher createDispatcher(DeadLetterStore deadLetterStore, long maxJobs) throws IOException {
+        EmailDispatcher emailDispatcher = new EmailDispatcher(
+                new EmailSenderImpl(mailSender, new EmailAddressValidator()),
+                outboxJournal,
+                retryScheduler,
+                new FailureClassifier(),
+                deadLetterStore,
+                new DeliveryEventBus(),
+                new LaneProperties(),
+                new SimpleMeterRegistry(),
+                60,
+                maxJobs,
+                2);
+        emailDispatcher.start();
+        return emailDispatcher;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        emailDispatcher.stop();
+        retryScheduler.stop();
+        mailSender.destroy();
+        smtpStub.close();
+    }
+
+    private MessageJob awaitStatus(String id, MessageJobStatus status) throws InterruptedException {
+        return TestFixtures.await(() -> emailDispatcher.getJob(id), job -> job.getStatus() == status,
+                "Message " + id + " did not reach status " + status);
+    }
+
+    @Test
+    public void shouldRetryTransientFailureUntilSent() throws Exception {
+        smtpStub.setDataReply("451 Try again later");
+        MessageJob job = emailDispatcher.submit(createParams());
+        awaitStatus(job.getId(), MessageJobStatus.DEFERRED);
+        smtpStub.setDataReply("250 OK");
+
+        awaitStatus(job.getId(), MessageJobStatus.SENT);
+        assertEquals(1, smtpStub.getMessageCount());
+    }
+
+    @Test
+    public void shouldNotRetryPermanentFailure() throws Exception {
+        smtpStub.setDataReply("554 Message rejected");
+        MessageJob job = emailDispatcher.submit(createParams());
+
+        awaitStatus(job.getId(), MessageJobStatus.FAILED);
+        assertEquals(1, job.getFailedAttempts());
+        assertNull(deadLetterStore.get(job.getId()));
+    }
+
+    @Test
+    public void shouldMoveExhaustedMessageToDeadLettersAndReplayIt() throws Exception {
+        smtpStub.setDataReply("451 Try again later");
+        MessageJob job = emailDispatcher.submit(createParams());
+
+        awaitStatus(job.getId(), MessageJobStatus.DEAD_LETTERED);
+        DeadLetter deadLetter = deadLetterStore.get(job.getId());
+        assertNotNull(deadLetter);
+        assertEquals(3, deadLetter.getAttempts());
+
+        smtpStub.setDataReply("250 OK");
+        emailDispatcher.replayDeadLetter(job.getId());
+        assertNull(emailDispatcher.replayDeadLetter(job.getId()));
+        awaitStatus(job.getId(), MessageJobStatus.SENT);
+        assertNull(deadLetterStore.get(job.getId()));
+        assertEquals(1, smtpStub.getMessageCount());
+    }
+
+    @Test
+    public void shouldRetryInsteadOfDeadLetteringWhenStoringFails() throws Exception {
+        AtomicBoolean storeFailing = new AtomicBoolean(true);
+        deadLetterStore = new DeadLetterStore(outboxJournal) {
+            @Override
+            public void add(DeadLetter deadLetter) throws IOException {
+                if (storeFailing.getAndSet(false))
+                    throw new IOException("Disk full");
+                super.add(deadLetter);
+            }
+        };
+        emailDispatcher.stop();
+        emailDispatcher = createDispatcher(deadLetterStore, 10_000);
+        smtpStub.setDataReply("451 Try again later");
+        MessageJob job = emailDispatcher.submit(createParams());
+
+        awaitStatus(job.getId(), MessageJobStatus.DEAD_LETTERED);
+        assertEquals(4, deadLetterStore.get(job.getId()).getAttempts());
+    }
+
+    @Test
+    public void shouldForgetOldestJobsBeyondMaxJobs() throws Exception {
+        emailDispatcher.stop();
+        emailDispatcher = createDispatcher(deadLetterStore, 1);
+        MessageJob first = emailDispatcher.submit(createParams());
+        MessageJob second = emailDispatcher.submit(createParams());
+
+        assertNull(emailDispatcher.getJob(first.getId()));
+        awaitStatus(second.getId(), MessageJobStatus.SENT);
+        smtpStub.awaitMessageCount(2);
+        assertEquals(2, smtpStub.getMessageCount());
+    }
+}
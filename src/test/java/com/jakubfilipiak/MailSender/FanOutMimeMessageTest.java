@@ -0,0 +1,108 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.io.ByteStreams;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.mail.Message;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FanOutMimeMessageTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SmtpStub smtpStub;
+    private PooledJavaMailSender mailSender;
+    private EmailSenderImpl emailSender;
+    private File attachment;
+
+    @Before
+    public void setUp() throws Exception {
+        smtpStub = new SmtpStub();
+        mailSender = smtpStub.createMailSender(1);
+        emailSender = new EmailSenderImpl(mailSender, new EmailAddressValidator());
+        attachment = folder.newFile("invoice.pdf");
+        Files.write(attachment.toPath(), new byte[]{1, 2, 3, 4, 5});
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mailSender.destroy();
+        smtpStub.close();
+    }
+
+    @Test
+    public void shouldShareBodyAndKeepHeadersPerRecipient() throws Exception {
+        SharedMimeBody body = SharedMimeBody.render(emailSender.composeMessage(createParams("jan@example.com")));
+        MimeMessage first = new FanOutMimeMessage(body, "anna@example.com");
+        MimeMessage second = new FanOutMimeMessage(body, "piotr@example.com");
+        first.saveChanges();
+        second.saveChanges();
+
+        MimeMessage received = writeAndParse(first);
+        assertEquals("anna@example.com", received.getRecipients(Message.RecipientType.TO)[0].toString());
+        assertEquals("piotr@example.com", writeAndParse(second).getRecipients(Message.RecipientType.TO)[0].toString());
+        assertNotEquals(first.getMessageID(), second.getMessageID());
+        assertEquals("Invoice", received.getSubject());
+        MimeMultipart content = (MimeMultipart) received.getContent();
+        assertEquals("Please find the invoice attached.", ((MimeMultipart) content.getBodyPart(0).getContent())
+                .getBodyPart(0).getContent());
+        MimeBodyPart attachmentPart = (MimeBodyPart) content.getBodyPart(1);
+        assertEquals("invoice.pdf", attachmentPart.getFileName());
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5}, ByteStreams.toByteArray(attachmentPart.getInputStream()));
+    }
+
+    @Test
+    public void shouldSendBatchWithSharedContent() throws Exception {
+        List<MessageParams> paramsList = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+            paramsList.add(createParams("recipient" + i + "@example.com"));
+        paramsList.add(MessageParams.builder()
+                .recipient("other@example.com")
+                .subject("Other")
+                .textContent("Other content")
+                .isHtml(false)
+                .build());
+
+        List<BatchItemResult> results = emailSender.sendMessages(paramsList, 0);
+
+        for (BatchItemResult result : results)
+            assertEquals(BatchItemStatus.SENT, result.getStatus());
+        assertEquals(6, smtpStub.getMessageCount());
+        assertTrue(smtpStub.getDataBytes() > 0);
+    }
+
+    private MessageParams createParams(String recipient) {
+        return MessageParams.builder()
+                .recipient(recipient)
+                .subject("Invoice")
+                .textContent("Please find the invoice attached.")
+                .isHtml(false)
+                .attachments(Collections.singletonMap(attachment.getPath(), "invoice.pdf"))
+                .build();
+    }
+
+    private MimeMessage writeAndParse(MimeMessage message) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.writeTo(out);
+        return new MimeMessage(message.getSession(), new ByteArrayInputStream(out.toByteArray()));
+    }
+}
@@ -0,0 +1,90 @@
+package com.jakubfilipiak.MailSender;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LaneQueueTest {
+
+    private static final Set<MessagePriority> ALL_LANES = EnumSet.allOf(MessagePriority.class);
+
+    private LaneQueue laneQueue;
+
+    @Before
+    public void setUp() {
+        LaneProperties laneProperties = new LaneProperties();
+        laneProperties.getBulk().setCapacity(100);
+        laneQueue = new LaneQueue(laneProperties);
+    }
+
+    @Test
+    public void shouldShareWorkersByLaneWeight() throws Exception {
+        for (int i = 0; i < 100; i++)
+            assertTrue(laneQueue.offer(createJob(MessagePriority.BULK)));
+        for (int i = 0; i < 30; i++) {
+            assertTrue(laneQueue.offer(createJob(MessagePriority.NORMAL)));
+            assertTrue(laneQueue.offer(createJob(MessagePriority.TRANSACTIONAL)));
+        }
+
+        // weights 8:3:1, so 24 takes drain 16 transactional, 6 normal and 2 bulk messages
+        Map<MessagePriority, Integer> taken = new EnumMap<>(MessagePriority.class);
+        for (int i = 0; i < 24; i++)
+            taken.merge(laneQueue.take(ALL_LANES).getPriority(), 1, Integer::sum);
+
+        assertEquals(16, (int) taken.get(MessagePriority.TRANSACTIONAL));
+        assertEquals(6, (int) taken.get(MessagePriority.NORMAL));
+        assertEquals(2, (int) taken.get(MessagePriority.BULK));
+    }
+
+    @Test
+    public void shouldLimitEachLaneSeparately() {
+        for (int i = 0; i < 100; i++)
+            assertTrue(laneQueue.offer(createJob(MessagePriority.BULK)));
+
+        assertFalse(laneQueue.offer(createJob(MessagePriority.BULK)));
+        assertEquals(0, laneQueue.remainingCapacity(MessagePriority.BULK));
+        assertTrue(laneQueue.offer(createJob(MessagePriority.TRANSACTIONAL)));
+        assertEquals(101, laneQueue.size());
+    }
+
+    @Test
+    public void shouldKeepReservedWorkerOnItsLane() throws Exception {
+        for (int i = 0; i < 10; i++)
+            laneQueue.offer(createJob(MessagePriority.BULK));
+        CompletableFuture<MessageJob> reserved = CompletableFuture.supplyAsync(() -> {
+            try {
+                return laneQueue.take(EnumSet.of(MessagePriority.TRANSACTIONAL));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(reserved.isDone());
+
+        laneQueue.offer(createJob(MessagePriority.TRANSACTIONAL));
+
+        assertEquals(MessagePriority.TRANSACTIONAL, reserved.get(5, TimeUnit.SECONDS).getPriority());
+        assertEquals(10, laneQueue.size(MessagePriority.BULK));
+    }
+
+    private MessageJob createJob(MessagePriority priority) {
+        return new MessageJob(UUID.randomUUID().toString(), MessageParams.builder()
+                .recipient("jan@example.com")
+                .subject("Subject")
+                .textContent("Text")
+                .isHtml(false)
+                .priority(priority)
+                .build());
+    }
+}
@@ -0,0 +1,62 @@
+package com.jakubfilipiak.MailSender;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+// runs in its own surefire execution with a heap smaller than the attachment, see pom.xml
+public class LargeAttachmentTest {
+
+    private static final long ATTACHMENT_BYTES = 200L * 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SmtpStub smtpStub;
+    private PooledJavaMailSender mailSender;
+
+    @Before
+    public void setUp() throws Exception {
+        smtpStub = new SmtpStub();
+        mailSender = smtpStub.createMailSender(1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mailSender.destroy();
+        smtpStub.close();
+    }
+
+    @Test
+    public void shouldSendAttachmentLargerThanHeap() throws Exception {
+        // only meaningful when the heap could not hold the encoded attachment
+        assumeTrue(Runtime.getRuntime().maxMemory() < ATTACHMENT_BYTES);
+        File attachment = folder.newFile("archive.zip");
+        try (RandomAccessFile file = new RandomAccessFile(attachment, "rw")) {
+            file.setLength(ATTACHMENT_BYTES);
+        }
+        EmailSender emailSender = new EmailSenderImpl(mailSender, new EmailAddressValidator());
+
+        emailSender.sendMessage(MessageParams.builder()
+                .recipient("jan@example.com")
+                .subject("Archive")
+                .textContent("See attached")
+                .isHtml(false)
+                .attachments(Collections.singletonMap(attachment.getPath(), "archive.zip"))
+                .build());
+
+        assertEquals(1, smtpStub.getMessageCount());
+        long encodedBytes = (ATTACHMENT_BYTES + 2) / 3 * 4;
+        assertTrue(smtpStub.getDataBytes() > encodedBytes);
+    }
+}
@@ -0,0 +1,167 @@
+package com.jakubfilipiak.MailSender;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MergeJobServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SmtpStub smtpStub;
+    private PooledJavaMailSender mailSender;
+    private RetryScheduler retryScheduler;
+    private EmailSender emailSender;
+    private EmailDispatcher emailDispatcher;
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private MergeJobService mergeJobService;
+
+    @Before
+    public void setUp() throws Exception {
+        smtpStub = new SmtpStub();
+        mailSender = smtpStub.createMailSender(2, 1000);
+        OutboxJournal outboxJournal = new OutboxJournal(objectMapper, false, "outbox", 1024);
+        retryScheduler = new RetryScheduler(3, 10, 50, 2.0);
+        retryScheduler.start();
+        emailSender = new EmailSenderImpl(mailSender, new EmailAddressValidator());
+        emailDispatcher = new EmailDispatcher(
+                emailSender,
+                outboxJournal,
+                retryScheduler,
+                new FailureClassifier(),
+                new DeadLetterStore(outboxJournal),
+                new DeliveryEventBus(),
+                new LaneProperties(),
+                new SimpleMeterRegistry(),
+                60,
+                10_000,
+                2);
+        emailDispatcher.start();
+        folder.newFolder("sources");
+        mergeJobService = createService();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mergeJobService.stop();
+        emailDispatcher.stop();
+        retryScheduler.stop();
+        mailSender.destroy();
+        smtpStub.close();
+    }
+
+    private MergeJobService createService() throws Exception {
+        MergeJobService service = new MergeJobService(
+                emailSender,
+                emailDispatcher,
+                objectMapper,
+                folder.getRoot().toPath().resolve("jobs").toString(),
+                folder.getRoot().toPath().resolve("sources").toString(),
+                1000,
+                16,
+                1);
+        service.start();
+        return service;
+    }
+
+    private MergeJobRequest createRequest(String source, MergeFormat format) {
+        return MergeJobRequest.builder()
+                .source(source)
+                .format(format)
+                .subject("Offer for {{name}}")
+                .textContent("Hello {{name}}, your code is {{code}}.")
+                .isHtml(false)
+                .build();
+    }
+
+    private void writeSource(String name, String content) throws Exception {
+        Files.write(folder.getRoot().toPath().resolve("sources").resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private MergeJob awaitStatus(String id, MergeJobStatus status) throws InterruptedException {
+        return TestFixtures.await(() -> mergeJobService.getJob(id), job -> job.getStatus() == status,
+                "Merge job " + id + " did not reach status " + status);
+    }
+
+    private void awaitMessages(int count) throws InterruptedException {
+        smtpStub.awaitMessageCount(count);
+        assertEquals(count, smtpStub.getMessageCount());
+    }
+
+    @Test
+    public void shouldMergeCsvRowsAndSkipInvalidOnes() throws Exception {
+        writeSource("recipients.csv", "email,name,code\n"
+                + "jan@example.com,Jan,A1\n"
+                + "wrongRecipient@gmail,Anna,B2\n"
+                + "ola@example.com,Ola,C3\n");
+        MergeJob job = mergeJobService.create(createRequest("recipients.csv", MergeFormat.CSV));
+
+        awaitStatus(job.getId(), MergeJobStatus.COMPLETED);
+        assertEquals(3, job.getRowOffset());
+        assertEquals(2, job.getSubmittedRows());
+        assertEquals(1, job.getInvalidRows());
+        assertEquals(job.getTotalBytes(), job.getBytesRead());
+        awaitMessages(2);
+    }
+
+    @Test
+    public void shouldMergeUploadedNdjsonRows() throws Exception {
+        String rows = "{\"email\":\"jan@example.com\",\"name\":\"Jan\",\"code\":1}\n"
+                + "{\"email\":\"anna@example.com\",\"name\":\"Anna\"}\n"
+                + "{\"email\":\"ola@example.com\",\"name\":{\"first\":\"Ola\"},\"code\":3}\n"
+                + "{\"email\":\"piotr@example.com\",\"name\":\"Piotr\",\"code\":4}\n";
+        MergeJob job = mergeJobService.createFromUpload(
+                createRequest(null, MergeFormat.NDJSON),
+                new ByteArrayInputStream(rows.getBytes(StandardCharsets.UTF_8)));
+
+        awaitStatus(job.getId(), MergeJobStatus.COMPLETED);
+        assertEquals(2, job.getSubmittedRows());
+        assertEquals(2, job.getInvalidRows());
+        assertTrue(Files.notExists(job.getSourcePath()));
+        awaitMessages(2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectSourceOutsideSourceDir() throws Exception {
+        mergeJobService.create(createRequest("../jobs/other.csv", MergeFormat.CSV));
+    }
+
+    @Test
+    public void shouldResumeFromCheckpointAfterRestart() throws Exception {
+        smtpStub.setDataDelayMillis(2);
+        StringBuilder rows = new StringBuilder("email,name,code\n");
+        for (int i = 0; i < 300; i++)
+            rows.append("user").append(i).append("@example.com,User ").append(i).append(',').append(i).append('\n');
+        writeSource("campaign.csv", rows.toString());
+        MergeJob job = mergeJobService.create(createRequest("campaign.csv", MergeFormat.CSV));
+        while (job.getRowOffset() < 20)
+            Thread.sleep(1);
+        mergeJobService.pause(job.getId());
+        awaitStatus(job.getId(), MergeJobStatus.PAUSED);
+        long pausedAt = job.getRowOffset();
+        assertTrue(pausedAt < 300);
+
+        mergeJobService.stop();
+        mergeJobService = createService();
+        MergeJob restored = mergeJobService.getJob(job.getId());
+        assertEquals(MergeJobStatus.PAUSED, restored.getStatus());
+        assertEquals(pausedAt, restored.getRowOffset());
+
+        mergeJobService.resume(job.getId());
+        awaitStatus(job.getId(), MergeJobStatus.COMPLETED);
+        assertEquals(300, restored.getSubmittedRows());
+        awaitMessages(300);
+    }
+}
@@ -0,0 +1,108 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.base.Ticker;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class MessageDeduplicatorTest {
+
+    private AtomicInteger sends;
+    private AtomicLong nanos;
+    private MessageDeduplicator deduplicator;
+
+    @Before
+    public void setUp() {
+        sends = new AtomicInteger();
+        nanos = new AtomicLong();
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        deduplicator = new MessageDeduplicator(true, false, 60, 100, ticker);
+    }
+
+    @Test
+    public void shouldReplayOriginalResultForRepeatedKey() throws Exception {
+        CompletableFuture<Integer> pending = new CompletableFuture<>();
+        CompletableFuture<Integer> first = deduplicator.deduplicate("key-1", message("Hello"), () -> {
+            sends.incrementAndGet();
+            return pending;
+        }, status -> status == 200);
+        // a retry arriving while the first send is still running waits for the same result
+        CompletableFuture<Integer> second = deduplicator.deduplicate("key-1", message("Hello"), this::send, status -> status == 200);
+        pending.complete(200);
+
+        assertEquals(200, (int) first.get());
+        assertEquals(200, (int) second.get());
+        assertEquals(1, sends.get());
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        deduplicator.deduplicate("key-1", message("Hello"), this::send, status -> status == 200).get();
+        assertEquals(2, sends.get());
+    }
+
+    @Test
+    public void shouldRejectKeyReusedWithDifferentContent() {
+        deduplicator.deduplicate("key-1", message("Hello"), this::send, status -> true);
+        try {
+            deduplicator.deduplicate("key-1", message("Hello again"), this::send, status -> true);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("Idempotency key reused with different content!", e.getMessage());
+        }
+        assertEquals(1, sends.get());
+    }
+
+    @Test
+    public void shouldForgetResultsThatAreNotFinal() throws Exception {
+        CompletableFuture<Integer> first = deduplicator.deduplicate("key-1", message("Hello"),
+                () -> CompletableFuture.completedFuture(429), status -> status != 429);
+        CompletableFuture<Integer> second = deduplicator.deduplicate("key-1", message("Hello"), this::send, status -> status != 429);
+
+        assertEquals(429, (int) first.get());
+        assertEquals(200, (int) second.get());
+        assertEquals(1, sends.get());
+    }
+
+    @Test
+    public void shouldDeduplicateByContentOnlyWhenEnabled() throws Exception {
+        deduplicator.deduplicate(null, message("Hello"), this::send, status -> true).get();
+        deduplicator.deduplicate(null, message("Hello"), this::send, status -> true).get();
+        assertEquals(2, sends.get());
+
+        MessageDeduplicator contentDeduplicator = new MessageDeduplicator(true, true, 60, 100, Ticker.systemTicker());
+        CompletableFuture<Integer> first = contentDeduplicator.deduplicate(null, message("Hello"), this::send, status -> true);
+        CompletableFuture<Integer> second = contentDeduplicator.deduplicate(null, message("Hello"), this::send, status -> true);
+        assertSame(first, second);
+        assertEquals(3, sends.get());
+        assertNotEquals(
+                MessageDeduplicator.hashContent(MessageParams.builder().subject("ab").textContent("c").build()),
+                MessageDeduplicator.hashContent(MessageParams.builder().subject("a").textContent("bc").build()));
+    }
+
+    private CompletableFuture<Integer> send() {
+        sends.incrementAndGet();
+        return CompletableFuture.completedFuture(200);
+    }
+
+    private MessageParams message(String subject) {
+        return MessageParams.builder()
+                .recipient("jan@example.com")
+                .subject(subject)
+                .textContent("Hi")
+                .isHtml(false)
+                .build();
+    }
+}
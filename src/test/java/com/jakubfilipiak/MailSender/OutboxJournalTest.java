@@ -0,0 +1,145 @@
+package com.jakubfilipiak.MailSender;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static com.jakubfilipiak.MailSender.TestFixtures.createParams;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OutboxJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private OutboxJournal journal;
+
+    @After
+    public void tearDown() throws Exception {
+        if (journal != null)
+            journal.close();
+    }
+
+    private OutboxJournal openJournal(long segmentBytes) throws IOException {
+        OutboxJournal journal = new OutboxJournal(
+                new ObjectMapper().findAndRegisterModules(), true, folder.getRoot().getPath(), segmentBytes);
+        journal.open();
+        return journal;
+    }
+
+    private void reopenJournal(long segmentBytes) throws Exception {
+        journal.close();
+        journal = openJournal(segmentBytes);
+    }
+
+    private long countSegments() throws IOException {
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void shouldRecoverOnlyUnacknowledgedEntriesAfterRestart() throws Exception {
+        journal = openJournal(1024 * 1024);
+        journal.append("1", createParams("first@example.com"));
+        journal.append("2", createParams("second@example.com"));
+        journal.append("3", createParams("third@example.com"));
+        journal.ack("2");
+        reopenJournal(1024 * 1024);
+
+        Map<String, MessageParams> recovered = journal.takeRecoveredEntries();
+        assertEquals(2, recovered.size());
+        assertEquals("first@example.com", recovered.get("1").getRecipient());
+        assertEquals("third@example.com", recovered.get("3").getRecipient());
+        assertTrue(journal.takeRecoveredEntries().isEmpty());
+    }
+
+    @Test
+    public void shouldRecoverDeadLettersUntilTheyAreReplayed() throws Exception {
+        journal = openJournal(1024 * 1024);
+        journal.append("1", createParams("first@example.com"));
+        journal.append("2", createParams("second@example.com"));
+        journal.appendDeadLetter(DeadLetter.builder()
+                .id("1")
+                .params(createParams("first@example.com"))
+                .attempts(5)
+                .lastError("451 Try again later")
+                .deadAt(Instant.now())
+                .build());
+        journal.appendDeadLetter(DeadLetter.builder()
+                .id("2")
+                .params(createParams("second@example.com"))
+                .attempts(5)
+                .lastError("451 Try again later")
+                .deadAt(Instant.now())
+                .build());
+        journal.append("2", createParams("second@example.com"));
+        reopenJournal(1024 * 1024);
+
+        Map<String, DeadLetter> deadLetters = journal.takeRecoveredDeadLetters();
+        assertEquals(1, deadLetters.size());
+        assertEquals(5, deadLetters.get("1").getAttempts());
+        assertEquals("first@example.com", deadLetters.get("1").getParams().getRecipient());
+        assertEquals(1, journal.takeRecoveredEntries().size());
+    }
+
+    @Test
+    public void shouldDeleteSegmentsWithoutLiveEntries() throws Exception {
+        journal = openJournal(256);
+        for (int i = 0; i < 20; i++) {
+            journal.append(String.valueOf(i), createParams("recipient" + i + "@example.com"));
+            journal.ack(String.valueOf(i));
+        }
+        journal.append("last", createParams("last@example.com"));
+        reopenJournal(256);
+
+        assertEquals(1, journal.takeRecoveredEntries().size());
+        assertTrue(countSegments() <= 2);
+    }
+
+    @Test
+    public void shouldKeepAcksWhileTheirEntriesAreStillOnDisk() throws Exception {
+        journal = openJournal(300);
+        journal.append("pending", createParams("pending@example.com"));
+        journal.append("done", createParams("done@example.com"));
+        journal.ack("done");
+        for (int i = 0; i < 10; i++) {
+            journal.append(String.valueOf(i), createParams("recipient" + i + "@example.com"));
+            journal.ack(String.valueOf(i));
+        }
+        reopenJournal(300);
+
+        Map<String, MessageParams> recovered = journal.takeRecoveredEntries();
+        assertEquals(1, recovered.size());
+        assertTrue(recovered.containsKey("pending"));
+    }
+
+    @Test
+    public void shouldIgnoreTornRecordAtEndOfSegment() throws Exception {
+        journal = openJournal(1024 * 1024);
+        journal.append("1", createParams("first@example.com"));
+        journal.close();
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath());
+             RandomAccessFile segment = new RandomAccessFile(files.findFirst().get().toFile(), "rw")) {
+            segment.seek(segment.length());
+            segment.writeInt(100);
+            segment.write(new byte[10]);
+        }
+        journal = openJournal(1024 * 1024);
+
+        Map<String, MessageParams> recovered = journal.takeRecoveredEntries();
+        assertEquals(1, recovered.size());
+        assertEquals("first@example.com", recovered.get("1").getRecipient());
+    }
+}
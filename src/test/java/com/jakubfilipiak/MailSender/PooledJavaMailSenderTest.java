@@ -0,0 +1,174 @@
+package com.jakubfilipiak.MailSender;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PooledJavaMailSenderTest {
+
+    private SmtpStub smtpStub;
+    private PooledJavaMailSender mailSender;
+
+    @Before
+    public void setUp() throws Exception {
+        smtpStub = new SmtpStub();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (mailSender != null)
+            mailSender.destroy();
+        smtpStub.close();
+    }
+
+    private PooledJavaMailSender createMailSender(int maxSize, int maxMessagesPerConnection, long idleTimeoutMillis) {
+        PooledJavaMailSender mailSender = new PooledJavaMailSender(
+                maxSize, maxMessagesPerConnection, idleTimeoutMillis, 5000);
+        mailSender.setHost("localhost");
+        mailSender.setPort(smtpStub.getPort());
+        return mailSender;
+    }
+
+    private MimeMessage createMessage(int number) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message);
+        helper.setTo("recipient" + number + "@example.com");
+        helper.setSubject("Message " + number);
+        helper.setText("Message " + number);
+        return message;
+    }
+
+    @Test
+    public void shouldSendManyMessagesOverOneConnection() throws MessagingException {
+        mailSender = createMailSender(4, 1000, 30000);
+        for (int i = 0; i < 50; i++)
+            mailSender.send(createMessage(i));
+        assertEquals(50, smtpStub.getMessageCount());
+        assertEquals(1, smtpStub.getConnectionCount());
+        assertEquals(1, mailSender.getPool().getOpenConnections());
+    }
+
+    @Test
+    public void shouldNotExceedMaxSizeWhenSendingConcurrently() throws Exception {
+        mailSender = createMailSender(3, 1000, 30000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            MimeMessage message = createMessage(i);
+            futures.add(executor.submit(() -> mailSender.send(message)));
+        }
+        for (Future<?> future : futures)
+            future.get();
+        executor.shutdown();
+        assertEquals(200, smtpStub.getMessageCount());
+        assertTrue(smtpStub.getConnectionCount() <= 3);
+    }
+
+    @Test
+    public void shouldOpenNewConnectionWhenMaxMessagesPerConnectionReached() throws MessagingException {
+        mailSender = createMailSender(4, 10, 30000);
+        for (int i = 0; i < 25; i++)
+            mailSender.send(createMessage(i));
+        assertEquals(25, smtpStub.getMessageCount());
+        assertEquals(3, smtpStub.getConnectionCount());
+    }
+
+    @Test
+    public void shouldSendMultipleMessagesInOneSession() throws MessagingException {
+        mailSender = createMailSender(4, 1000, 30000);
+        MimeMessage[] messages = new MimeMessage[20];
+        for (int i = 0; i < messages.length; i++)
+            messages[i] = createMessage(i);
+        mailSender.send(messages);
+        assertEquals(20, smtpStub.getMessageCount());
+        assertEquals(1, smtpStub.getConnectionCount());
+    }
+
+    @Test
+    public void shouldReconnectWhenServerDroppedConnection() throws Exception {
+        mailSender = createMailSender(4, 1000, 30000);
+        mailSender.send(createMessage(1));
+        smtpStub.dropConnections();
+        mailSender.send(createMessage(2));
+        assertEquals(2, smtpStub.getMessageCount());
+        assertEquals(2, smtpStub.getConnectionCount());
+        assertEquals(1, mailSender.getPool().getOpenConnections());
+    }
+
+    @Test
+    public void shouldEvictIdleConnections() throws Exception {
+        mailSender = createMailSender(4, 1000, 100);
+        mailSender.send(createMessage(1));
+        Thread.sleep(400);
+        assertEquals(0, mailSender.getPool().getIdleConnections());
+        mailSender.send(createMessage(2));
+        assertEquals(2, smtpStub.getConnectionCount());
+    }
+
+    @Test
+    public void shouldSendSampledMessagesOutsideThePool() throws MessagingException {
+        mailSender = createMailSender(4, 1000, 30000);
+        ProtocolTraceSampler traceSampler = new ProtocolTraceSampler(1);
+        mailSender.setTraceSampler(traceSampler);
+        mailSender.send(createMessage(0));
+        traceSampler.setSampleRate(0);
+        mailSender.send(createMessage(1));
+        mailSender.send(createMessage(2));
+        assertEquals(3, smtpStub.getMessageCount());
+        assertEquals(2, smtpStub.getConnectionCount());
+        assertEquals(1, mailSender.getPool().getCreatedConnections());
+    }
+
+    @Test
+    public void shouldSendOverPrewarmedConnections() throws MessagingException {
+        mailSender = createMailSender(3, 1000, 30000);
+        assertEquals(3, mailSender.getPool().prewarm(5));
+        assertEquals(3, smtpStub.getConnectionCount());
+        for (int i = 0; i < 10; i++)
+            mailSender.send(createMessage(i));
+        assertEquals(10, smtpStub.getMessageCount());
+        assertEquals(3, smtpStub.getConnectionCount());
+        assertEquals(3, mailSender.getPool().getCreatedConnections());
+    }
+
+    @Test
+    public void shouldClassifyPoolExhaustionAsTransientButNotAsRelayFailure() throws MessagingException {
+        mailSender = new PooledJavaMailSender(1, 1000, 30000, 100);
+        mailSender.setHost("localhost");
+        mailSender.setPort(smtpStub.getPort());
+        PooledTransport held = mailSender.getPool().borrow();
+        FailureClassifier failureClassifier = new FailureClassifier();
+        try {
+            mailSender.send(createMessage(1));
+            fail();
+        } catch (MailSendException e) {
+            assertTrue(failureClassifier.isTransient(e));
+            assertTrue(failureClassifier.isPoolUnavailable(e));
+            assertFalse(failureClassifier.isRelayFailure(e));
+        } finally {
+            mailSender.getPool().release(held);
+        }
+        mailSender.getPool().close();
+        try {
+            mailSender.send(createMessage(2));
+            fail();
+        } catch (MailSendException e) {
+            assertTrue(failureClassifier.isTransient(e));
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.base.Ticker;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import javax.mail.internet.MimeMessage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.jakubfilipiak.MailSender.TestFixtures.createParams;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RelayRouterTest {
+
+    private List<SmtpStub> smtpStubs = new ArrayList<>();
+    private List<Relay> relays = new ArrayList<>();
+    private AtomicLong nanos = new AtomicLong();
+    private Ticker ticker = new Ticker() {
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+    };
+    private RelayRouter relayRouter;
+
+    @Before
+    public void setUp() throws Exception {
+        for (int i = 0; i < 2; i++)
+            smtpStubs.add(new SmtpStub());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (relayRouter != null)
+            relayRouter.destroy();
+        for (SmtpStub smtpStub : smtpStubs)
+            smtpStub.close();
+    }
+
+    private EmailSender createEmailSender(RoutingStrategy strategy, int[] weights, Map<String, List<String>> domainRules) {
+        for (int i = 0; i < smtpStubs.size(); i++) {
+            relays.add(new Relay("relay" + i, smtpStubs.get(i).createMailSender(2), weights[i],
+                    new CircuitBreaker(3, 1000, 1, 2, ticker)));
+        }
+        relayRouter = new RelayRouter(relays, strategy, domainRules, new FailureClassifier(), new JavaMailSenderImpl());
+        return TestFixtures.createEmailSender(relayRouter, new SendRateLimiter(new RateLimitProperties()));
+    }
+
+    @Test
+    public void shouldSpreadMessagesByWeight() throws Exception {
+        EmailSender emailSender = createEmailSender(RoutingStrategy.WEIGHTED_ROUND_ROBIN, new int[]{3, 1}, Collections.emptyMap());
+        for (int i = 0; i < 40; i++)
+            emailSender.sendMessage(createParams("user" + i + "@example.com"));
+        assertEquals(30, smtpStubs.get(0).getMessageCount());
+        assertEquals(10, smtpStubs.get(1).getMessageCount());
+    }
+
+    @Test
+    public void shouldSpreadIdleRelaysEvenlyByLeastInFlight() throws Exception {
+        EmailSender emailSender = createEmailSender(RoutingStrategy.LEAST_IN_FLIGHT, new int[]{1, 1}, Collections.emptyMap());
+        for (int i = 0; i < 20; i++)
+            emailSender.sendMessage(createParams("user" + i + "@example.com"));
+        assertEquals(10, smtpStubs.get(0).getMessageCount());
+        assertEquals(10, smtpStubs.get(1).getMessageCount());
+    }
+
+    @Test
+    public void shouldRouteByRecipientDomain() throws Exception {
+        EmailSender emailSender = createEmailSender(RoutingStrategy.LEAST_IN_FLIGHT, new int[]{1, 1},
+                Collections.singletonMap("gmail.com", Collections.singletonList("relay1")));
+        List<BatchItemResult> results = emailSender.sendMessages(Arrays.asList(
+                createParams("jan@gmail.com"),
+                createParams("anna@GMAIL.com"),
+                createParams("ola@example.com"),
+                createParams("piotr@example.com")), 0);
+        for (BatchItemResult result : results)
+            assertEquals(BatchItemStatus.SENT, result.getStatus());
+        assertEquals(1, smtpStubs.get(0).getMessageCount());
+        assertEquals(3, smtpStubs.get(1).getMessageCount());
+    }
+
+    @Test
+    public void shouldFailOverAndTripTheBreaker() throws Exception {
+        EmailSender emailSender = createEmailSender(RoutingStrategy.LEAST_IN_FLIGHT, new int[]{1, 1}, Collections.emptyMap());
+        smtpStubs.get(0).setDataReply("421 Service not available");
+        for (int i = 0; i < 10; i++)
+            emailSender.sendMessage(createParams("user" + i + "@example.com"));
+        assertEquals(0, smtpStubs.get(0).getMessageCount());
+        assertEquals(10, smtpStubs.get(1).getMessageCount());
+        assertEquals(CircuitBreaker.State.OPEN, relays.get(0).getCircuitBreaker().getState());
+
+        smtpStubs.get(0).setDataReply("250 OK");
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        for (int i = 0; i < 10; i++)
+            emailSender.sendMessage(createParams("user" + i + "@example.com"));
+        assertEquals(CircuitBreaker.State.CLOSED, relays.get(0).getCircuitBreaker().getState());
+        assertTrue(smtpStubs.get(0).getMessageCount() >= 2);
+    }
+
+    @Test
+    public void shouldFailOverBatchMessagesAndTripTheBreaker() throws Exception {
+        EmailSender emailSender = createEmailSender(RoutingStrategy.LEAST_IN_FLIGHT, new int[]{1, 1}, Collections.emptyMap());
+        smtpStubs.get(0).setDataReply("421 Service not available");
+        List<MessageParams> paramsList = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            paramsList.add(createParams("user" + i + "@example" + i + ".com"));
+
+        List<BatchItemResult> results = emailSender.sendMessages(paramsList, 0);
+
+        for (BatchItemResult result : results)
+            assertEquals(BatchItemStatus.SENT, result.getStatus());
+        assertEquals(0, smtpStubs.get(0).getMessageCount());
+        assertEquals(10, smtpStubs.get(1).getMessageCount());
+        assertEquals(CircuitBreaker.State.OPEN, relays.get(0).getCircuitBreaker().getState());
+    }
+
+    @Test
+    public void shouldComposeMessagesOutsideAnyRelaySession() throws Exception {
+        createEmailSender(RoutingStrategy.LEAST_IN_FLIGHT, new int[]{1, 1}, Collections.emptyMap());
+        Properties relayProperties = new Properties();
+        relayProperties.setProperty("mail.from", "relay0@example.com");
+        ((JavaMailSenderImpl) relays.get(0).getMailSender()).setJavaMailProperties(relayProperties);
+
+        MimeMessage message = relayRouter.createMimeMessage();
+
+        assertNull(message.getSession().getProperty("mail.from"));
+    }
+
+    @Test(expected = SendRateLimitedException.class)
+    public void shouldThrottleWhenEveryRelayIsOpen() throws Exception {
+        EmailSender emailSender = createEmailSender(RoutingStrategy.LEAST_IN_FLIGHT, new int[]{1, 1}, Collections.emptyMap());
+        for (SmtpStub smtpStub : smtpStubs)
+            smtpStub.setDataReply("421 Service not available");
+        for (int i = 0; i < 10; i++) {
+            try {
+                emailSender.sendMessage(createParams("user" + i + "@example.com"));
+            } catch (SendRateLimitedException e) {
+                throw e;
+            } catch (Exception e) {
+                // relay failures until both breakers open
+            }
+        }
+    }
+
+    @Test
+    public void shouldLetTrafficBackGradually() {
+        CircuitBreaker breaker = new CircuitBreaker(2, 1000, 1, 2, ticker);
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertFalse(breaker.tryAcquire());
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void shouldReleaseTrialWithoutVerdictWhenSendFailsForOtherReasons() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1000, 1, 1, ticker);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl() {
+            @Override
+            public void send(MimeMessage... mimeMessages) {
+                if (failure.get() != null)
+                    throw failure.get();
+            }
+        };
+        relays.add(new Relay("relay0", mailSender, 1, breaker));
+        relayRouter = new RelayRouter(
+                relays, RoutingStrategy.LEAST_IN_FLIGHT, Collections.emptyMap(), new FailureClassifier(), mailSender);
+        breaker.recordFailure();
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+
+        for (RuntimeException e : Arrays.asList(new IllegalStateException("Broken message!"), new MailParseException("Wrong address!"))) {
+            failure.set(e);
+            Relay relay = relayRouter.route("jan@example.com");
+            try {
+                relayRouter.send(relay, mailSender.createMimeMessage());
+                fail();
+            } catch (RuntimeException expected) {
+                assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+            }
+        }
+        failure.set(null);
+        relayRouter.send(relayRouter.route("jan@example.com"), mailSender.createMimeMessage());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+}
@@ -0,0 +1,83 @@
+package com.jakubfilipiak.MailSender;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import static com.jakubfilipiak.MailSender.TestFixtures.createParams;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SendRateLimiterTest {
+
+    @Test
+    public void shouldKeepDomainPermitWhenGlobalLimitRejects() throws Exception {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.getGlobal().setPermitsPerSecond(2);
+        properties.getDomains().put("slow.example.com", createLimit(0.001, 0));
+        SendRateLimiter rateLimiter = new SendRateLimiter(properties);
+
+        rateLimiter.acquire("jan@example.com");
+        try {
+            rateLimiter.acquire("anna@slow.example.com");
+            fail();
+        } catch (SendRateLimitedException e) {
+            // rejected by the global limit
+        }
+        Thread.sleep(600);
+
+        // the domain allows one send per 1000 s, so this only passes if the rejected attempt handed it back
+        rateLimiter.acquire("anna@slow.example.com");
+    }
+
+    @Test
+    public void shouldReleaseConcurrencyPermitAfterEachSend() throws Exception {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setDomain(createLimit(0, 1));
+        SendRateLimiter rateLimiter = new SendRateLimiter(properties);
+
+        Semaphore permits = rateLimiter.acquire("jan@example.com");
+        try {
+            rateLimiter.acquire("anna@EXAMPLE.com");
+            fail();
+        } catch (SendRateLimitedException e) {
+            // the only permit is taken
+        }
+        rateLimiter.acquire("anna@other.com");
+        rateLimiter.release(permits);
+        rateLimiter.acquire("anna@example.com");
+    }
+
+    @Test
+    public void shouldSendWholeBatchToOneDomainWithinConcurrencyLimit() throws Exception {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setDomain(createLimit(0, 1));
+        SmtpStub smtpStub = new SmtpStub();
+        PooledJavaMailSender mailSender = smtpStub.createMailSender(2);
+        EmailSender emailSender = TestFixtures.createEmailSender(
+                RelayRouter.single(mailSender), new SendRateLimiter(properties));
+        try {
+            List<MessageParams> paramsList = new ArrayList<>();
+            for (int i = 0; i < 5; i++)
+                paramsList.add(createParams("user" + i + "@example.com"));
+            paramsList.add(createParams("jan@other.com"));
+
+            for (int round = 0; round < 2; round++)
+                for (BatchItemResult result : emailSender.sendMessages(paramsList, 0))
+                    assertEquals(BatchItemStatus.SENT, result.getStatus());
+            assertEquals(12, smtpStub.getMessageCount());
+        } finally {
+            mailSender.destroy();
+            smtpStub.close();
+        }
+    }
+
+    private RateLimitProperties.Limit createLimit(double permitsPerSecond, int maxConcurrent) {
+        RateLimitProperties.Limit limit = new RateLimitProperties.Limit();
+        limit.setPermitsPerSecond(permitsPerSecond);
+        limit.setMaxConcurrent(maxConcurrent);
+        return limit;
+    }
+}
@@ -0,0 +1,159 @@
+package com.jakubfilipiak.MailSender;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SmtpStub implements Closeable {
+
+    private ServerSocket serverSocket;
+    private ExecutorService executor = Executors.newCachedThreadPool();
+    private List<Socket> sockets = new CopyOnWriteArrayList<>();
+    private AtomicInteger connectionCount = new AtomicInteger();
+    private AtomicInteger messageCount = new AtomicInteger();
+    private AtomicLong dataBytes = new AtomicLong();
+    private volatile String dataReply = "250 OK";
+    private volatile long dataDelayMillis;
+
+    public SmtpStub() throws IOException {
+        serverSocket = new ServerSocket(0);
+        executor.execute(this::acceptConnections);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    public int getMessageCount() {
+        return messageCount.get();
+    }
+
+    public long getDataBytes() {
+        return dataBytes.get();
+    }
+
+    public PooledJavaMailSender createMailSender(int maxConnections) {
+        return createMailSender(maxConnections, 100);
+    }
+
+    public PooledJavaMailSender createMailSender(int maxConnections, int maxMessagesPerConnection) {
+        PooledJavaMailSender mailSender = new PooledJavaMailSender(maxConnections, maxMessagesPerConnection, 30000, 5000);
+        mailSender.setHost("localhost");
+        mailSender.setPort(getPort());
+        return mailSender;
+    }
+
+    // returns once count messages arrived or the wait timed out, callers assert on getMessageCount()
+    public void awaitMessageCount(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (messageCount.get() < count && System.nanoTime() < deadline)
+            Thread.sleep(10);
+    }
+
+    public void setDataReply(String dataReply) {
+        this.dataReply = dataReply;
+    }
+
+    public void setDataDelayMillis(long dataDelayMillis) {
+        this.dataDelayMillis = dataDelayMillis;
+    }
+
+    public void dropConnections() throws IOException {
+        for (Socket socket : sockets)
+            socket.close();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        dropConnections();
+        executor.shutdownNow();
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connectionCount.incrementAndGet();
+                sockets.add(socket);
+                executor.execute(() -> handle(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+            OutputStream out = s.getOutputStream();
+            reply(out, "220 localhost SmtpStub");
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() < 4 ? line.toUpperCase() : line.substring(0, 4).toUpperCase();
+                switch (command) {
+                    case "EHLO":
+                    case "HELO":
+                        reply(out, "250 localhost");
+                        break;
+                    case "MAIL":
+                    case "RCPT":
+                    case "RSET":
+                    case "NOOP":
+                        reply(out, "250 OK");
+                        break;
+                    case "DATA":
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        // message content is only counted so large messages don't fill the heap
+                        while ((line = in.readLine()) != null && !line.equals("."))
+                            dataBytes.addAndGet(line.length() + 2);
+                        delay();
+                        String response = dataReply;
+                        if (response.startsWith("2"))
+                            messageCount.incrementAndGet();
+                        reply(out, response);
+                        break;
+                    case "QUIT":
+                        reply(out, "221 Bye");
+                        return;
+                    default:
+                        reply(out, "500 Unknown command");
+                }
+            }
+        } catch (IOException e) {
+            // connection dropped
+        } finally {
+            sockets.remove(socket);
+        }
+    }
+
+    private void delay() {
+        try {
+            if (dataDelayMillis > 0)
+                Thread.sleep(dataDelayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reply(OutputStream out, String response) throws IOException {
+        out.write((response + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+}
@@ -0,0 +1,47 @@
+package com.jakubfilipiak.MailSender;
+
+import org.junit.Test;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SmtpTraceOutputStreamTest {
+
+    @Test
+    public void shouldKeepCommandsAndRepliesWithoutMessageContent() {
+        List<String> lines = new ArrayList<>();
+        PrintStream out = new PrintStream(new SmtpTraceOutputStream(lines::add, 64 * 1024), true);
+        out.print("MAIL FROM:<jan@example.com>\r\n250 OK\r\nDATA\r\n354 End data with <CR><LF>.<CR><LF>\r\n");
+        out.print("Subject: Salary\r\n\r\nConfidential body\r\n.\r\n250 OK\r\n");
+        out.close();
+
+        assertEquals(Arrays.asList(
+                "MAIL FROM:<jan@example.com>",
+                "250 OK",
+                "DATA",
+                "354 End data with <CR><LF>.<CR><LF>",
+                "[38 bytes of message content omitted]",
+                ".",
+                "250 OK"), lines);
+    }
+
+    @Test
+    public void shouldCapLinesAndTranscript() {
+        List<String> lines = new ArrayList<>();
+        PrintStream out = new PrintStream(new SmtpTraceOutputStream(lines::add, 3000), true);
+        char[] longLine = new char[5000];
+        Arrays.fill(longLine, 'x');
+        for (int i = 0; i < 5; i++)
+            out.print(new String(longLine) + "\r\n");
+        out.close();
+
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).endsWith(" [truncated]"));
+        assertEquals("[trace truncated after 3000 bytes]", lines.get(2));
+    }
+}
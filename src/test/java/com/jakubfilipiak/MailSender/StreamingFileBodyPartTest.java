@@ -0,0 +1,80 @@
+package com.jakubfilipiak.MailSender;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.mail.Part;
+import javax.mail.Session;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+import javax.mail.internet.MimeUtility;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StreamingFileBodyPartTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldWriteFileContentAsBase64() throws Exception {
+        // a partial last chunk, a chunk that ends exactly at the end of file and an empty file
+        for (int size : new int[]{2 * 57 * 1024 + 100, 57 * 1024, 0}) {
+            byte[] content = new byte[size];
+            new Random(size).nextBytes(content);
+            File file = folder.newFile("report-" + size + ".pdf");
+            Files.write(file.toPath(), content);
+
+            MimeBodyPart received = writeAndParse(
+                    new StreamingFileBodyPart(file.toPath(), "application/pdf", "quarterly report.pdf"));
+
+            assertEquals(Part.ATTACHMENT, received.getDisposition());
+            assertEquals("base64", received.getEncoding());
+            assertTrue(received.isMimeType("application/pdf"));
+            assertEquals("quarterly report.pdf", MimeUtility.decodeText(received.getFileName()));
+            assertArrayEquals(content, ByteStreams.toByteArray(received.getInputStream()));
+        }
+    }
+
+    @Test
+    public void shouldKeepBase64LinesWithinMimeLimit() throws Exception {
+        File file = folder.newFile("data.bin");
+        Files.write(file.toPath(), new byte[3 * 57 * 1024]);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new StreamingFileBodyPart(file.toPath(), "application/octet-stream", "data.bin").writeTo(out);
+
+        String written = new String(out.toByteArray(), StandardCharsets.US_ASCII);
+        String body = written.substring(written.indexOf("\r\n\r\n") + 4);
+        for (String line : body.split("\r\n", -1))
+            assertTrue(line.length() <= 76 && !line.isEmpty());
+    }
+
+    private MimeBodyPart writeAndParse(StreamingFileBodyPart bodyPart) throws Exception {
+        Session session = Session.getInstance(new Properties());
+        MimeMessage message = new MimeMessage(session);
+        MimeMultipart multipart = new MimeMultipart();
+        MimeBodyPart text = new MimeBodyPart();
+        text.setText("See attached");
+        multipart.addBodyPart(text);
+        multipart.addBodyPart(bodyPart);
+        message.setContent(multipart);
+        message.saveChanges();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.writeTo(out);
+        MimeMessage parsed = new MimeMessage(session, new ByteArrayInputStream(out.toByteArray()));
+        return (MimeBodyPart) ((MimeMultipart) parsed.getContent()).getBodyPart(1);
+    }
+}
@@ -0,0 +1,41 @@
+package com.jakubfilipiak.MailSender;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TemplateRegistryTest {
+
+    private TemplateRegistry templateRegistry = new TemplateRegistry(10_000_000, 2);
+
+    private MessageTemplate createTemplate(int version) {
+        return MessageTemplate.builder()
+                .name("welcome")
+                .version(version)
+                .content("Hello {{name}} v" + version)
+                .build();
+    }
+
+    @Test
+    public void shouldKeepOnlyNewestVersions() {
+        for (int version = 1; version <= 3; version++)
+            templateRegistry.register(createTemplate(version));
+
+        assertNull(templateRegistry.getTemplate("welcome", 1));
+        assertEquals(2, templateRegistry.getTemplate("welcome", 2).getVersion().intValue());
+        assertEquals(3, templateRegistry.getTemplate("welcome", null).getVersion().intValue());
+        assertEquals("Hello Jan v3",
+                templateRegistry.render("welcome", null, Collections.singletonMap("name", "Jan"), false));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectVersionOlderThanEveryKeptOne() {
+        templateRegistry.register(createTemplate(2));
+        templateRegistry.register(createTemplate(3));
+
+        templateRegistry.register(createTemplate(1));
+    }
+}
@@ -0,0 +1,45 @@
+package com.jakubfilipiak.MailSender;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+public class TestFixtures {
+
+    public static MessageParams createParams() {
+        return createParams("recipient@example.com");
+    }
+
+    public static MessageParams createParams(String recipient) {
+        return MessageParams.builder()
+                .recipient(recipient)
+                .subject("Subject")
+                .textContent("Text")
+                .isHtml(false)
+                .build();
+    }
+
+    public static EmailSenderImpl createEmailSender(RelayRouter relayRouter, SendRateLimiter rateLimiter) {
+        return new EmailSenderImpl(
+                relayRouter,
+                new EmailAddressValidator(),
+                new TemplateRegistry(10_000_000, 10),
+                new AttachmentCache(1024 * 1024, 16 * 1024 * 1024),
+                rateLimiter,
+                new SimpleMeterRegistry());
+    }
+
+    public static <T> T await(Supplier<T> supplier, Predicate<T> condition, String failure) throws
+            InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            T value = supplier.get();
+            if (condition.test(value))
+                return value;
+            Thread.sleep(10);
+        }
+        throw new AssertionError(failure);
+    }
+}
@@ -0,0 +1,171 @@
+package com.jakubfilipiak.MailSender;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WebhookDispatcherTest {
+
+    private HttpServer receiver;
+    private List<JsonNode> batches = new CopyOnWriteArrayList<>();
+    private List<JsonNode> fastBatches = new CopyOnWriteArrayList<>();
+    private volatile CountDownLatch receiverBlocked = new CountDownLatch(0);
+    private volatile int responseStatus = 200;
+    private DeliveryEventBus eventBus;
+    private WebhookDispatcher webhookDispatcher;
+
+    @Before
+    public void setUp() throws Exception {
+        receiver = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        receiver.createContext("/hook", exchange -> {
+            batches.add(new ObjectMapper().readTree(exchange.getRequestBody()));
+            try {
+                receiverBlocked.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(responseStatus, -1);
+            exchange.close();
+        });
+        receiver.createContext("/fast", exchange -> {
+            fastBatches.add(new ObjectMapper().readTree(exchange.getRequestBody()));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        receiver.setExecutor(Executors.newCachedThreadPool());
+        receiver.start();
+        eventBus = new DeliveryEventBus();
+        webhookDispatcher = new WebhookDispatcher(
+                eventBus, new RestTemplateBuilder(), new String[0], 5, 3, 60_000, 15_000, 60_000, 2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        receiverBlocked.countDown();
+        webhookDispatcher.stop();
+        receiver.stop(0);
+    }
+
+    @Test
+    public void shouldPostCoalescedEventsInBatches() {
+        WebhookSubscription subscription = webhookDispatcher.register(getUrl());
+        eventBus.publish(DeliveryEventType.ACCEPTED, "m1", "jan@example.com", 0, null);
+        eventBus.publish(DeliveryEventType.ACCEPTED, "m2", "anna@example.com", 0, null);
+        eventBus.publish(DeliveryEventType.SENT, "m1", "jan@example.com", 0, null);
+        eventBus.publish(DeliveryEventType.SENT, null, "piotr@example.com", 0, null);
+        eventBus.publish(DeliveryEventType.FAILED, "m2", "anna@example.com", 1, "550 No such user");
+
+        webhookDispatcher.flush(subscription);
+
+        assertEquals(1, batches.size());
+        JsonNode batch = batches.get(0);
+        assertEquals(3, batch.size());
+        assertEquals("SENT", batch.get(0).get("type").asText());
+        assertEquals("m1", batch.get(0).get("messageId").asText());
+        assertEquals("piotr@example.com", batch.get(1).get("recipient").asText());
+        assertEquals("FAILED", batch.get(2).get("type").asText());
+        assertEquals("550 No such user", batch.get(2).get("error").asText());
+        assertEquals(3, subscription.getDeliveredEvents());
+    }
+
+    @Test
+    public void shouldNotBlockPublishersWhileReceiverIsSlow() throws Exception {
+        WebhookSubscription subscription = webhookDispatcher.register(getUrl());
+        receiverBlocked = new CountDownLatch(1);
+        eventBus.publish(DeliveryEventType.SENT, "m0", "jan@example.com", 0, null);
+        Thread flushing = new Thread(() -> webhookDispatcher.flush(subscription));
+        flushing.start();
+        while (batches.isEmpty())
+            Thread.sleep(10);
+
+        long started = System.nanoTime();
+        for (int i = 1; i <= 100; i++)
+            eventBus.publish(DeliveryEventType.SENT, "m" + i, "jan@example.com", 0, null);
+
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(5, subscription.getBufferedEvents());
+        assertEquals(95, subscription.getDroppedEvents());
+        receiverBlocked.countDown();
+        flushing.join(10_000);
+        assertEquals(0, subscription.getBufferedEvents());
+    }
+
+    @Test
+    public void shouldKeepEventsAndBackOffWhenReceiverFails() {
+        WebhookSubscription subscription = webhookDispatcher.register(getUrl());
+        responseStatus = 503;
+        eventBus.publish(DeliveryEventType.SENT, "m1", "jan@example.com", 0, null);
+        eventBus.publish(DeliveryEventType.SENT, "m2", "anna@example.com", 0, null);
+
+        webhookDispatcher.flush(subscription);
+        webhookDispatcher.flush(subscription);
+
+        assertEquals(1, batches.size());
+        assertEquals(2, subscription.getBufferedEvents());
+        assertEquals(1, subscription.getFailedPosts());
+        assertTrue(subscription.isBackingOff());
+    }
+
+    @Test
+    public void shouldKeepPostingToOtherReceiversWhileOneIsSlow() throws Exception {
+        webhookDispatcher.stop();
+        webhookDispatcher = new WebhookDispatcher(
+                eventBus, new RestTemplateBuilder(), new String[0], 5, 3, 50, 15_000, 60_000, 2);
+        receiverBlocked = new CountDownLatch(1);
+        webhookDispatcher.register(getUrl());
+        webhookDispatcher.register(getUrl("/fast"));
+
+        eventBus.publish(DeliveryEventType.SENT, "m1", "jan@example.com", 0, null);
+        while (batches.isEmpty())
+            Thread.sleep(10);
+        eventBus.publish(DeliveryEventType.SENT, "m2", "anna@example.com", 0, null);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (fastBatches.size() < 2 && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        assertEquals(2, fastBatches.size());
+        assertEquals(1, batches.size());
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void shouldRejectSubscriptionsOverLimit() {
+        webhookDispatcher.register(getUrl());
+        webhookDispatcher.register(getUrl("/fast"));
+
+        webhookDispatcher.register(getUrl());
+    }
+
+    @Test
+    public void shouldAcceptSubscriptionAfterAnotherIsRemoved() {
+        WebhookSubscription subscription = webhookDispatcher.register(getUrl());
+        webhookDispatcher.register(getUrl("/fast"));
+        webhookDispatcher.unregister(subscription.getId());
+
+        webhookDispatcher.register(getUrl());
+
+        assertEquals(2, webhookDispatcher.getSubscriptions().size());
+    }
+
+    private String getUrl() {
+        return getUrl("/hook");
+    }
+
+    private String getUrl(String path) {
+        return "http://localhost:" + receiver.getAddress().getPort() + path;
+    }
+}